@@ -0,0 +1,38 @@
+package benchmarks;
+
+import frontend.ProgramGenerator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Input programs for the benchmarks.
+ * Names of the form "synthetic-N" denote a generated program with N classes,
+ * all other names refer to files in testdata/translation/classes.
+ */
+public class BenchmarkInputs {
+
+    private static final Path TESTDATA = Paths.get("testdata", "translation", "classes");
+    private static final String SYNTHETIC = "synthetic-";
+
+    /**
+     * Returns the source code of the input with the given name.
+     */
+    public static String load(String name) throws IOException {
+        if (name.startsWith(SYNTHETIC)) {
+            return synthetic(Integer.parseInt(name.substring(SYNTHETIC.length())));
+        }
+        return Files.readString(TESTDATA.resolve(name));
+    }
+
+    /**
+     * Generates a program with the given number of classes in inheritance chains of length 10.
+     */
+    public static String synthetic(int classes) {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setClasses(classes);
+        generator.setInheritanceDepth(10);
+        return generator.generateSource();
+    }
+}
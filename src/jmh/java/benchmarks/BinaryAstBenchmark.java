@@ -0,0 +1,66 @@
+package benchmarks;
+
+import frontend.BinaryAstReader;
+import frontend.BinaryAstWriter;
+import frontend.NQJFrontend;
+import frontend.SourceText;
+import java.util.concurrent.TimeUnit;
+import notquitejava.ast.NQJProgram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reloading a program from the binary AST format with parsing its source.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryAstBenchmark {
+
+    /**
+     * The source and the binary AST of an input program.
+     */
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"QuickSortOO.java", "portfolio_test10.java", "synthetic-100", "synthetic-1000"})
+        public String input;
+
+        SourceText text;
+        NQJProgram program;
+        byte[] binary;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            text = new SourceText(input, BenchmarkInputs.load(input));
+            program = new NQJFrontend().parse(text);
+            binary = BinaryAstWriter.toBytes(program);
+        }
+    }
+
+    @Benchmark
+    public NQJProgram parse(Input in) throws Exception {
+        return new NQJFrontend().parse(in.text);
+    }
+
+    @Benchmark
+    public NQJProgram reload(Input in) throws Exception {
+        return BinaryAstReader.fromBytes(in.binary, in.text);
+    }
+
+    @Benchmark
+    public byte[] write(Input in) {
+        return BinaryAstWriter.toBytes(in.program);
+    }
+}
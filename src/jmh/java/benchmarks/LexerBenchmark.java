@@ -0,0 +1,68 @@
+package benchmarks;
+
+import frontend.FastLexer;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+import notquitejava.syntax.Lexer;
+import notquitejava.syntax.NotQuiteJavaParserSym;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the generated JFlex lexer with the hand-written {@link FastLexer}.
+ * Run with -prof gc to compare the allocation rates as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+    /**
+     * The source of an input program.
+     */
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"QuickSortOO.java", "portfolio_test10.java", "synthetic-100", "synthetic-1000"})
+        public String input;
+
+        String source;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            source = BenchmarkInputs.load(input);
+        }
+    }
+
+    private static int countTokens(Scanner scanner) throws Exception {
+        int tokens = 0;
+        for (Symbol s = scanner.next_token(); s.sym != NotQuiteJavaParserSym.EOF;
+                s = scanner.next_token()) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @Benchmark
+    public int jflex(Input in) throws Exception {
+        return countTokens(new Lexer(new StringReader(in.source)));
+    }
+
+    @Benchmark
+    public int handwritten(Input in) throws Exception {
+        return countTokens(new FastLexer(new StringReader(in.source)));
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import frontend.FastParser;
+import frontend.NQJFrontend;
+import java.util.concurrent.TimeUnit;
+import notquitejava.ast.NQJProgram;
+import notquitejava.syntax.NotQuiteJavaParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the generated {@link NotQuiteJavaParser} with the hand-written {@link FastParser}.
+ * Both use the same lexer. The steady state benchmarks measure warmed up throughput,
+ * the startup benchmarks measure the first parse in a fresh JVM, including class loading
+ * and the initialization of the parse tables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    /**
+     * The source of an input program.
+     */
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"QuickSortOO.java", "portfolio_test10.java", "synthetic-100", "synthetic-1000"})
+        public String input;
+
+        String source;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            source = BenchmarkInputs.load(input);
+        }
+    }
+
+    private static NQJProgram parse(String source, boolean useGeneratedParser) throws Exception {
+        NQJFrontend frontend = new NQJFrontend();
+        frontend.setUseFastParser(!useGeneratedParser);
+        frontend.setUseFastLexer(true);
+        NQJProgram program = frontend.parseString(source);
+        if (!frontend.getSyntaxErrors().isEmpty()) {
+            throw new IllegalStateException("Syntax errors: " + frontend.getSyntaxErrors());
+        }
+        return program;
+    }
+
+    @Benchmark
+    public NQJProgram cup(Input in) throws Exception {
+        return parse(in.source, true);
+    }
+
+    @Benchmark
+    public NQJProgram handwritten(Input in) throws Exception {
+        return parse(in.source, false);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public NQJProgram cupStartup(Input in) throws Exception {
+        return parse(in.source, true);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public NQJProgram handwrittenStartup(Input in) throws Exception {
+        return parse(in.source, false);
+    }
+}
@@ -0,0 +1,161 @@
+package benchmarks;
+
+import analysis.Analysis;
+import analysis.CompilationContext;
+import frontend.NQJFrontend;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import java_cup.runtime.Symbol;
+import minillvm.analysis.Checks;
+import minillvm.ast.Prog;
+import minillvm.printer.DuplicateNames;
+import minillvm.printer.PrettyPrinter;
+import notquitejava.ast.NQJProgram;
+import notquitejava.syntax.Lexer;
+import notquitejava.syntax.NotQuiteJavaParserSym;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import translation.Translator;
+
+/**
+ * Benchmarks each compiler phase separately.
+ * The input of a phase is prepared outside of the measurement,
+ * so every benchmark only measures the phase itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+
+    /**
+     * The source of an input program and the results of all phases on it.
+     */
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"BinarySearch.java", "BinaryTree.java", "BubbleSort.java", "QuickSort.java",
+                "QuickSortOO.java", "portfolio_test6.java", "portfolio_test7.java",
+                "portfolio_test8.java", "portfolio_test9.java", "portfolio_test10.java",
+                "synthetic-100", "synthetic-1000"})
+        public String input;
+
+        String source;
+        NQJProgram program;
+        Prog llvmProg;
+
+        /**
+         * Runs all phases once to obtain the inputs of the individual phases.
+         */
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            source = BenchmarkInputs.load(input);
+            program = parse(source);
+            check(program);
+            llvmProg = translate(program);
+            DuplicateNames.eliminateDuplicateNames(llvmProg);
+        }
+    }
+
+    /**
+     * A freshly translated program for phases which modify the program.
+     */
+    @State(Scope.Thread)
+    public static class FreshProg {
+        Prog llvmProg;
+
+        @Setup(Level.Invocation)
+        public void setup(Input input) throws Exception {
+            llvmProg = translate(input.program);
+        }
+    }
+
+    static NQJProgram parse(String source) throws Exception {
+        NQJFrontend frontend = new NQJFrontend();
+        NQJProgram program = frontend.parseString(source);
+        if (!frontend.getSyntaxErrors().isEmpty()) {
+            throw new IllegalStateException("Syntax errors: " + frontend.getSyntaxErrors());
+        }
+        return program;
+    }
+
+    static Analysis check(NQJProgram program) {
+        Analysis analysis = new Analysis(program, new CompilationContext());
+        analysis.check();
+        if (!analysis.getTypeErrors().isEmpty()) {
+            throw new IllegalStateException("Type errors: " + analysis.getTypeErrors());
+        }
+        return analysis;
+    }
+
+    /**
+     * Translates a program, which must have been checked before.
+     */
+    static Prog translate(NQJProgram program) {
+        return new Translator(program, new CompilationContext()).translate();
+    }
+
+    /**
+     * Counts the tokens of the input.
+     */
+    @Benchmark
+    public int lex(Input in) throws Exception {
+        Lexer lexer = new Lexer(new StringReader(in.source));
+        int tokens = 0;
+        for (Symbol s = lexer.next_token(); s.sym != NotQuiteJavaParserSym.EOF;
+                s = lexer.next_token()) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @Benchmark
+    public NQJProgram parse(Input in) throws Exception {
+        return parse(in.source);
+    }
+
+    @Benchmark
+    public Analysis typecheck(Input in) {
+        return check(in.program);
+    }
+
+    @Benchmark
+    public Prog translate(Input in) {
+        return translate(in.program);
+    }
+
+    @Benchmark
+    public Prog duplicateNames(FreshProg fresh) {
+        DuplicateNames.eliminateDuplicateNames(fresh.llvmProg);
+        return fresh.llvmProg;
+    }
+
+    /**
+     * Prints the program without the duplicate name elimination.
+     */
+    @Benchmark
+    public String prettyPrint(Input in) {
+        StringBuilder sb = new StringBuilder();
+        PrettyPrinter printer = new PrettyPrinter(sb);
+        printer.setEliminateDuplicateNames(false);
+        in.llvmProg.match(printer);
+        return sb.toString();
+    }
+
+    @Benchmark
+    public Checks checks(Input in) {
+        Checks checks = new Checks();
+        checks.checkProgram(in.llvmProg);
+        return checks;
+    }
+}
@@ -0,0 +1,124 @@
+package benchmarks;
+
+import frontend.ProgramGenerator;
+import java.util.concurrent.TimeUnit;
+import minillvm.ast.Prog;
+import minillvm.printer.DuplicateNames;
+import minillvm.printer.PrettyPrinter;
+import notquitejava.ast.NQJProgram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how the time of each phase grows with the size of generated programs.
+ * Each shape grows one dimension of the program, and the scale doubles from one
+ * parameter to the next, so a linear phase doubles its time while a quadratic
+ * phase quadruples it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xss512m", "-Xmx4g"})
+public class ScalingBenchmark {
+
+    /**
+     * A generated program and the results of all phases on it.
+     */
+    @State(Scope.Benchmark)
+    public static class Workload {
+        @Param({"classes", "inheritance", "statements", "nesting", "expressions", "arrays"})
+        public String shape;
+
+        @Param({"1", "2", "4", "8"})
+        public int scale;
+
+        String source;
+        NQJProgram program;
+        Prog llvmProg;
+
+        /**
+         * Generates the program, at the largest scale e.g. 10k classes or
+         * 100k statements in one function.
+         */
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            ProgramGenerator generator = new ProgramGenerator();
+            switch (shape) {
+                case "classes":
+                    generator.setClasses(1250 * scale);
+                    break;
+                case "inheritance":
+                    generator.setClasses(1250 * scale);
+                    generator.setInheritanceDepth(1250 * scale);
+                    break;
+                case "statements":
+                    generator.setClasses(1);
+                    generator.setFunctionStatements(12500 * scale);
+                    break;
+                case "nesting":
+                    generator.setClasses(1);
+                    generator.setNestingDepth(250 * scale);
+                    break;
+                case "expressions":
+                    generator.setClasses(1);
+                    generator.setExpressionSize(2500 * scale);
+                    break;
+                case "arrays":
+                    generator.setClasses(1);
+                    generator.setArrayAccesses(2500 * scale);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown shape " + shape);
+            }
+            source = generator.generateSource();
+            program = PhaseBenchmark.parse(source);
+            PhaseBenchmark.check(program);
+            llvmProg = PhaseBenchmark.translate(program);
+            DuplicateNames.eliminateDuplicateNames(llvmProg);
+        }
+    }
+
+    @Benchmark
+    public NQJProgram parse(Workload w) throws Exception {
+        return PhaseBenchmark.parse(w.source);
+    }
+
+    @Benchmark
+    public Object typecheck(Workload w) {
+        return PhaseBenchmark.check(w.program);
+    }
+
+    @Benchmark
+    public Prog translate(Workload w) {
+        return PhaseBenchmark.translate(w.program);
+    }
+
+    @Benchmark
+    public Prog duplicateNames(Workload w) {
+        DuplicateNames.eliminateDuplicateNames(w.llvmProg);
+        return w.llvmProg;
+    }
+
+    /**
+     * Prints the program without the duplicate name elimination.
+     */
+    @Benchmark
+    public String prettyPrint(Workload w) {
+        StringBuilder sb = new StringBuilder();
+        PrettyPrinter printer = new PrettyPrinter(sb);
+        printer.setEliminateDuplicateNames(false);
+        w.llvmProg.match(printer);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import analysis.Analysis;
+import frontend.ProgramGenerator;
+import java.util.concurrent.TimeUnit;
+import notquitejava.ast.NQJProgram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the type check of a function with thousands of local variables which are
+ * read inside deeply nested blocks. With lookups independent of the nesting depth
+ * the time grows with the number of locals, but not with the depth.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xss512m"})
+public class ScopeBenchmark {
+
+    /**
+     * A parsed function with the given number of locals and depth of blocks.
+     */
+    @State(Scope.Thread)
+    public static class Workload {
+        @Param({"1000", "4000"})
+        public int locals;
+
+        @Param({"10", "1000"})
+        public int depth;
+
+        NQJProgram program;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            program = PhaseBenchmark.parse(ProgramGenerator.localsSource(locals, depth));
+        }
+    }
+
+    @Benchmark
+    public Analysis typecheck(Workload w) {
+        return PhaseBenchmark.check(w.program);
+    }
+}
@@ -1,6 +1,9 @@
 package analysis;
 
+import frontend.CompilerThread;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import notquitejava.ast.*;
 
 /**
@@ -11,26 +14,80 @@ public class Analysis extends NQJElement.DefaultVisitor {
     private final NQJProgram prog;
     private final List<TypeError> typeErrors = new ArrayList<>();
     private NameTable nameTable;
-    private final LinkedList<TypeContext> ctxt = new LinkedList<>();
+    private final ScopeChain scopes = new ScopeChain();
+    private final CompilationContext context;
 
     //This is used to fetch the current class for this expression
-    private static Stack<NQJClassDecl> curClassList = new Stack<>();
+    private final Stack<NQJClassDecl> curClassList;
 
     //This is used to check cycle in inheritance
-    private static final Map<String,String> inhMap = new HashMap<>();
+    private final Map<String,String> inhMap;
+
+    //The number of threads checking method bodies
+    private int checkThreads = 1;
+
+    //The stack size in bytes of the threads checking method bodies
+    private long stackSize = CompilerThread.DEFAULT_STACK_SIZE;
+
+    //Collects the declarations looked up by a body, null if they are not recorded
+    private Dependencies dependencies;
 
     public void addError(NQJElement element, String message) {
         typeErrors.add(new TypeError(element, message));
     }
 
     public Analysis(NQJProgram prog) {
+        this(prog, new CompilationContext());
+    }
+
+    /**
+     * Creates an analysis which keeps its state in the given compilation context.
+     */
+    public Analysis(NQJProgram prog, CompilationContext context) {
         this.prog = prog;
+        this.context = context;
+        this.curClassList = context.getCurClassList();
+        this.inhMap = context.getInhMap();
+    }
+
+    /**
+     * Creates an analysis which checks single classes or bodies for the given analysis.
+     * It shares the declarations, but has its own current class, scopes and errors,
+     * so that several of them can run on different threads.
+     */
+    private Analysis(Analysis parent) {
+        this.prog = parent.prog;
+        this.context = parent.context;
+        this.nameTable = parent.nameTable;
+        this.curClassList = new Stack<>();
+        this.inhMap = parent.inhMap;
+    }
+
+    /**
+     * Sets the number of threads checking the bodies of methods and functions.
+     * The bodies are checked concurrently once the declarations are known,
+     * the errors are the same as with a single thread and in the same order.
+     */
+    public void setCheckThreads(int checkThreads) {
+        this.checkThreads = checkThreads;
+    }
+
+    /**
+     * Sets the stack size in bytes of the threads checking bodies concurrently.
+     * The check recurses once per nesting level, like on the calling compiler thread.
+     */
+    public void setStackSize(long stackSize) {
+        this.stackSize = stackSize;
+    }
+
+    public CompilationContext getContext() {
+        return context;
     }
 
     /**
      * This method is used to insert current class and it's parent class to curClassList.
      */
-    public static void insertClass(NQJClassDecl classDecl) {
+    public void insertClass(NQJClassDecl classDecl) {
         curClassList.push(classDecl);
     }
 
@@ -46,33 +103,18 @@ public class Analysis extends NQJElement.DefaultVisitor {
     /**
      * This method clears the curClassList variable after processing it.
      */
-    public static void popClass()
+    public void popClass()
     {
         curClassList.clear();
     }
 
     /**
      * This method is used to get the current class name (thisExpr).
-     * This method also loads methods and fields from super classes except overridden methods.
+     * The inherited fields and methods are already part of the class tables,
+     * see {@link ClassHierarchy#inheritMembers()}.
      * @return String This returns the current class name especially for this expression.
      */
     public  String getCurClass() {
-
-        if (curClassList.size() > 1) {
-            NQJClassDecl childClass = curClassList.peek();
-            ClassObjects temp = nameTable.lookupClassNode(childClass.getName());
-
-            //copy all the fields and methods from superclass to this
-            for (NQJClassDecl extendClass : curClassList) {
-                if (childClass == extendClass) {
-                    continue; //skip the last element as it is already defined.
-                }
-                ClassObjects parentClass = nameTable.lookupClassNode(extendClass.getName());
-                parentClass.classVarList.forEach(temp.classVarList::putIfAbsent);
-                parentClass.classMethods.forEach(temp.classMethods::putIfAbsent);
-            }
-            nameTable.updateClassObject(temp, childClass.getName());
-        }
         if (curClassList.size() > 0) {
             return curClassList.peek().getName();
         }
@@ -85,26 +127,128 @@ public class Analysis extends NQJElement.DefaultVisitor {
      * @return NQJProgram This returns the decorated syntax tree.
      */
     public NQJProgram check() {
+        return check(null);
+    }
+
+    /**
+     * Checks the program and takes over the interned types of a previous check,
+     * see {@link NameTable#reuseTypes}.
+     */
+    NQJProgram check(NameTable previous) {
+        checkDeclarations(previous);
+
+        if (checkThreads > 1) {
+            checkParallel();
+        } else {
+            prog.accept(this);
+        }
+
+        return prog;
+    }
+
+    /**
+     * Builds the name table and checks the declarations, everything except the classes
+     * and bodies visited by {@link #check()}.
+     * @param previous The name table of a previous check whose types are taken over, or null
+     * @return true if the types of the previous check were taken over
+     */
+    boolean checkDeclarations(NameTable previous) {
         nameTable = new NameTable(this, prog);
+        boolean reused = previous != null && nameTable.reuseTypes(previous);
 
         verifyMainMethod();
 
         checkOverriding();
 
-        prog.accept(this);
+        return reused;
+    }
 
-        return prog;
+    /**
+     * Checks the bodies of all methods and functions on a pool of compiler threads.
+     * The classes are entered first on this thread in source order, which resolves their
+     * super classes and field types. Each body is then checked by its own analysis,
+     * and the errors are appended in the order of the sequential check.
+     */
+    private void checkParallel() {
+        List<List<TypeError>> classErrors = new ArrayList<>();
+        List<Integer> methodCounts = new ArrayList<>();
+        List<NQJClassDecl> owners = new ArrayList<>();
+        List<NQJFunctionDecl> bodies = new ArrayList<>();
+        for (NQJClassDecl c : prog.getClassDecls()) {
+            classErrors.add(checkClassHeader(c));
+            methodCounts.add(c.getMethods().size());
+            for (NQJFunctionDecl m : c.getMethods()) {
+                owners.add(c);
+                bodies.add(m);
+            }
+        }
+        for (NQJFunctionDecl f : prog.getFunctionDecls()) {
+            owners.add(null);
+            bodies.add(f);
+        }
+        // the signatures are read by the checks of all calls, resolve them before
+        for (NQJFunctionDecl m : bodies) {
+            for (NQJVarDecl v : m.getFormalParameters()) {
+                type(v.getType());
+            }
+            type(m.getReturnType());
+        }
+
+        ExecutorService pool = CompilerThread.newPool(checkThreads, stackSize);
+        try {
+            List<Future<List<TypeError>>> tasks = new ArrayList<>();
+            for (int i = 0; i < bodies.size(); i++) {
+                NQJClassDecl owner = owners.get(i);
+                NQJFunctionDecl body = bodies.get(i);
+                tasks.add(pool.submit(() -> checkBody(owner, body, null)));
+            }
+            int next = 0;
+            for (int c = 0; c < classErrors.size(); c++) {
+                typeErrors.addAll(classErrors.get(c));
+                for (int k = 0; k < methodCounts.get(c); k++, next++) {
+                    typeErrors.addAll(CompilerThread.join(tasks.get(next)));
+                }
+            }
+            for (; next < bodies.size(); next++) {
+                typeErrors.addAll(CompilerThread.join(tasks.get(next)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks the super class and the fields of a class and returns the errors found.
+     */
+    List<TypeError> checkClassHeader(NQJClassDecl classDecl) {
+        Analysis header = new Analysis(this);
+        header.enterClass(classDecl);
+        return header.typeErrors;
+    }
+
+    /**
+     * Checks a method of the given class or a function if the class is null,
+     * and returns the errors found.
+     * @param dependencies Collects the classes and functions looked up, may be null
+     */
+    List<TypeError> checkBody(NQJClassDecl owner, NQJFunctionDecl body,
+            Dependencies dependencies) {
+        Analysis checker = new Analysis(this);
+        checker.dependencies = dependencies;
+        if (owner != null) {
+            checker.insertClass(owner);
+        }
+        body.accept(checker);
+        return checker.typeErrors;
     }
 
     /**
      * This method clears all the buffers.
      */
     public void clearAll() {
-        NameTable.classList.clear();
+        context.clearAnalysis();
         nameTable = null;
-        curClassList.clear();
-        ctxt.clear();
-        inhMap.clear();
+        scopes.clear();
     }
 
     /**
@@ -159,35 +303,31 @@ public class Analysis extends NQJElement.DefaultVisitor {
      * @return
      */
      public boolean checkReturn(NQJStatement statement) {
-        if (statement instanceof NQJStmtIf) {
-            var statementT = getLastElement(((NQJStmtIf) statement).getIfTrue());
-            var statementF = getLastElement(((NQJStmtIf) statement).getIfFalse());
-            boolean statementl = checkReturn(statementT);
-            boolean statementr = checkReturn(statementF);
-            if (statementl == statementr == true) {
-                return true;
-            }
-        }
-        else if(statement instanceof NQJStmtWhile) {
-            var last = getLastElement(statement);
-            if (last == null){
-                return false;
-            }
-            if (checkReturn(last) == true) {
-                return true;
-            }
-        }
-        else if(statement instanceof NQJBlock) {
-            var last = getLastElement(statement);
-            if (checkReturn(last) == true) {
-                return true;
+        // uses explicit stacks instead of recursion, generated programs nest very deeply
+        List<NQJStatement> todo = new ArrayList<>();
+        List<Boolean> results = new ArrayList<>();
+        Set<NQJStatement> visitedIfs = Collections.newSetFromMap(new IdentityHashMap<>());
+        todo.add(statement);
+        while (!todo.isEmpty()) {
+            NQJStatement s = todo.remove(todo.size() - 1);
+            if (s instanceof NQJStmtIf && visitedIfs.contains(s)) {
+                // both branches are checked
+                boolean statementr = results.remove(results.size() - 1);
+                boolean statementl = results.remove(results.size() - 1);
+                results.add(statementl == statementr);
+            } else if (s instanceof NQJStmtIf) {
+                visitedIfs.add(s);
+                todo.add(s);
+                todo.add(getLastElement(((NQJStmtIf) s).getIfFalse()));
+                todo.add(getLastElement(((NQJStmtIf) s).getIfTrue()));
+            } else if (s instanceof NQJStmtWhile || s instanceof NQJBlock) {
+                // the result is the one of the last statement, null if there is none
+                todo.add(getLastElement(s));
+            } else {
+                results.add(s instanceof NQJStmtReturn);
             }
         }
-        else if (statement instanceof NQJStmtReturn) {
-            return true;
-        }
-
-        return false;
+        return results.get(0);
     }
 
     /**
@@ -215,25 +355,21 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
     @Override
     public void visit(NQJFunctionDecl m) {
-        // parameter names are unique, build context
-        TypeContext mctxt = this.ctxt.isEmpty()
-                ? new TypeContextImpl(null, Type.INVALID)
-                : this.ctxt.peek().copy();
+        // enter method context, parameter names are unique
+        scopes.enterScope();
         Set<String> paramNames = new HashSet<>();
         for (NQJVarDecl v : m.getFormalParameters()) {
             if (!paramNames.add(v.getName())) {
                 addError(m, "Parameter with name " + v.getName() + " already exists.");
             }
-            mctxt.putVar(v.getName(), type(v.getType()), v);
+            scopes.putVar(v.getName(), type(v.getType()), v);
         }
-        mctxt.setReturnType(type(m.getReturnType()));
-        // enter method context
-        ctxt.push(mctxt);
+        scopes.setReturnType(type(m.getReturnType()));
 
         m.getMethodBody().accept(this);
 
         // exit method context
-        ctxt.pop();
+        scopes.exitScope();
         if (!isReturnExist(m)) {
             typeErrors.add(new TypeError(m.getFormalParameters(),
                     m.getName() + " method does not have a return statement in all possible path"));
@@ -242,9 +378,18 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
 
     @Override public void visit(NQJClassDecl classDecl) {
+        enterClass(classDecl);
+        classDecl.getMethods().accept(this);
+
+        popClass();
+    }
 
+    /**
+     * Makes the class the current class and checks its super class and fields.
+     */
+    private void enterClass(NQJClassDecl classDecl) {
         classDecl.getExtended().accept(this);
-        Analysis.insertClass(classDecl);
+        insertClass(classDecl);
         var name  = getCurClass();
         if(curClassList.size() > 1) {
             var extendsClass = (NQJExtendsClass)classDecl.getExtended();
@@ -252,14 +397,11 @@ public class Analysis extends NQJElement.DefaultVisitor {
             classDecl.setDirectSuperClass(ref.getClassDecl());
         }
         classDecl.getFields().accept(this);
-        classDecl.getMethods().accept(this);
-
-        Analysis.popClass();
     }
 
     @Override public void visit(NQJNewObject newObject) {
         String className = newObject.getClassName();
-        ClassObjects obj = nameTable.lookupClassNode(className);
+        ClassObjects obj = lookupClassNode(className);
         newObject.setClassDeclaration(obj.getClassDecl());
     }
 
@@ -267,7 +409,7 @@ public class Analysis extends NQJElement.DefaultVisitor {
     public void visit(NQJExtendsClass extendsClass) {
         var ref = this.getNameTable().lookupClassNode(extendsClass.getName());
         if (ref != null) {
-            Analysis.insertClass(ref.getClassDecl());
+            insertClass(ref.getClassDecl());
         }
         else
         {
@@ -277,8 +419,8 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
     @Override
     public void visit(NQJStmtReturn stmtReturn) {
-        Type actualReturn = checkExpr(ctxt.peek(), stmtReturn.getResult());
-        Type expectedReturn = ctxt.getLast().getReturnType();
+        Type actualReturn = checkExpr(scopes, stmtReturn.getResult());
+        Type expectedReturn = scopes.getReturnType();
         if (!actualReturn.isSubtypeOf(expectedReturn)) {
             addError(stmtReturn, "Should return value of type " + expectedReturn
                     + ", but found " + actualReturn + ".");
@@ -287,8 +429,8 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
     @Override
     public void visit(NQJStmtAssign stmtAssign) {
-        Type lt = checkExpr(ctxt.peek(), stmtAssign.getAddress());
-        Type rt = checkExpr(ctxt.peek(), stmtAssign.getValue());
+        Type lt = checkExpr(scopes, stmtAssign.getAddress());
+        Type rt = checkExpr(scopes, stmtAssign.getValue());
         if (!rt.isSubtypeOf(lt)) {
             addError(stmtAssign.getValue(), "Cannot assign value of type " + rt
                     + " to " + lt + ".");
@@ -297,12 +439,12 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
     @Override
     public void visit(NQJStmtExpr stmtExpr) {
-        checkExpr(ctxt.peek(), stmtExpr.getExpr());
+        checkExpr(scopes, stmtExpr.getExpr());
     }
 
     @Override
     public void visit(NQJStmtWhile stmtWhile) {
-        Type ct = checkExpr(ctxt.peek(), stmtWhile.getCondition());
+        Type ct = checkExpr(scopes, stmtWhile.getCondition());
         if (!ct.isSubtypeOf(Type.BOOL)) {
             addError(stmtWhile.getCondition(),
                     "Condition of while-statement must be of type boolean, but this is of type "
@@ -313,7 +455,7 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
     @Override
     public void visit(NQJStmtIf stmtIf) {
-        Type ct = checkExpr(ctxt.peek(), stmtIf.getCondition());
+        Type ct = checkExpr(scopes, stmtIf.getCondition());
         if (!ct.isSubtypeOf(Type.BOOL)) {
             addError(stmtIf.getCondition(),
                     "Condition of if-statement must be of type boolean, but this is of type "
@@ -324,49 +466,43 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
     @Override
     public void visit(NQJBlock block) {
-        TypeContext bctxt = new TypeContextImpl(null, Type.INVALID);
-        TypeContext paramList = this.ctxt.getLast();
+        // enter block context, variables may shadow the ones of enclosing blocks
+        // but not the parameters
+        scopes.enterScope();
         for (NQJStatement s : block) {
             // could also be integrated into the visitor run
             if (s instanceof NQJVarDecl) {
                 NQJVarDecl varDecl = (NQJVarDecl) s;
-                TypeContextImpl.VarRef ref = paramList.lookupVar(varDecl.getName());
+                TypeContextImpl.VarRef ref = scopes.lookupVar(varDecl.getName(), 1);
                 if (ref != null) {
                     addError(varDecl, "A variable with name " + varDecl.getName()
                             + " is already defined.");
                 }
                 else {
-                    ref = bctxt.lookupVar(varDecl.getName());
+                    ref = scopes.lookupVar(varDecl.getName(), scopes.getDepth());
                     if (ref != null) {
                         addError(varDecl, "A variable with name " + varDecl.getName()
                                 + " is already defined.");
                     }
 
-                    bctxt.putVar(varDecl.getName(), type(varDecl.getType()), varDecl);
+                    scopes.putVar(varDecl.getName(), type(varDecl.getType()), varDecl);
                 }
             } else {
-                // enter block context
-                ctxt.push(bctxt);
                 s.accept(this);
-                // exit block context
-                ctxt.pop();
             }
         }
+        // exit block context
+        scopes.exitScope();
     }
 
     @Override
     public void visit(NQJVarDecl varDecl) {
-        TypeContext bctxt = ctxt.isEmpty()
-                ? new TypeContextImpl(null, Type.INVALID)
-                : this.ctxt.peek().copy();
-        TypeContextImpl.VarRef ref = bctxt.lookupVar(varDecl.getName());
+        TypeContextImpl.VarRef ref = scopes.lookupVar(varDecl.getName(), scopes.getDepth());
         if (ref != null) {
             addError(varDecl, "A variable with name " + varDecl.getName()
                     + " is already defined.");
         }
-
-        bctxt.putVar(varDecl.getName(), type(varDecl.getType()), varDecl);
-
+        type(varDecl.getType());
     }
 
     public Type checkExpr(TypeContext ctxt, NQJExpr e) {
@@ -391,9 +527,7 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
             @Override
             public Type case_TypeClass(NQJTypeClass typeClass) {
-                ClassType obj = new ClassType(typeClass.getName());
-                var ref = obj.getType(); //This returns Class Type
-                return ref;
+                return nameTable.getClassType(typeClass.getName());
             }
 
             @Override
@@ -408,7 +542,10 @@ public class Analysis extends NQJElement.DefaultVisitor {
 
         });
 
-        type.setType(result);
+        // the types of signatures and fields are resolved once before they are shared
+        if (type.getType() != result) {
+            type.setType(result);
+        }
         return result;
     }
 
@@ -416,15 +553,28 @@ public class Analysis extends NQJElement.DefaultVisitor {
         return nameTable;
     }
 
-    public TypeContext.VarRef lookupVar(String varName) {
-        for (TypeContext item: ctxt) {
-            TypeContext.VarRef ref = item.lookupVar(varName);
-            if (ref == null) {
-                continue;
-            }
-            return ref;
+    /**
+     * Looks up the fields and methods of a class, while checking a body.
+     */
+    public ClassObjects lookupClassNode(String className) {
+        if (dependencies != null) {
+            dependencies.addClass(className);
         }
-        return null;
+        return nameTable.lookupClassNode(className);
+    }
+
+    /**
+     * Looks up a global function, while checking a body.
+     */
+    public NQJFunctionDecl lookupFunction(String functionName) {
+        if (dependencies != null) {
+            dependencies.addFunction(functionName);
+        }
+        return nameTable.lookupFunction(functionName);
+    }
+
+    public TypeContext.VarRef lookupVar(String varName) {
+        return scopes.lookupVar(varName);
     }
 
     public List<TypeError> getTypeErrors() {
@@ -436,35 +586,28 @@ public class Analysis extends NQJElement.DefaultVisitor {
      * @param className This is the class name for which cyclic dependency needs to be calculated
      * @return boolean This return true if there exists a cycle
      */
-    public static boolean isCyclicDependent(String className) {
-        String key = className;
-
-        while (key != null) {
-            key = inhMap.get(key);
-            if (className.equals(key)) {
-                break;
-            }
-        }
-        if(className.equals(key)) {
-            return true;
-        }
-        return false;
+    public boolean isCyclicDependent(String className) {
+        return context.isCyclicDependent(className);
     }
 
     /**
-     * This method checks for overriden methods
+     * This method checks for overriden methods.
+     * Every class is compared with its direct subclasses. The method table of the class
+     * includes the inherited methods, so methods of all super classes are checked.
+     * Every class is checked once and every mismatching method is reported once, in the
+     * order of the declarations.
      */
     public void checkOverriding() {
-        for (var item: inhMap.values()){
-            var childClass = getChildClasses(item);
+        for (var item : context.getClassHierarchy().getTopologicalOrder()) {
             var parentClass = nameTable.lookupClassNode(item);
-            if (!isCyclicDependent(item) && (parentClass != null)) {
-                for (var child : childClass) {
-                    var childObj = nameTable.lookupClassNode(child);
-                    Set<String> methods = new HashSet<String>(parentClass.classMethods.keySet());
-                    methods.retainAll(childObj.classMethods.keySet());
-                    checkSignature(methods, item, child);
+            for (var child : getChildClasses(item)) {
+                var childObj = nameTable.lookupClassNode(child);
+                Set<String> methods = new LinkedHashSet<String>();
+                for (NQJFunctionDecl m : childObj.getClassDecl().getMethods()) {
+                    methods.add(m.getName());
                 }
+                methods.retainAll(parentClass.classMethods.keySet());
+                checkSignature(methods, item, child);
             }
         }
     }
@@ -486,17 +629,16 @@ public class Analysis extends NQJElement.DefaultVisitor {
             var methodDeclChild = child.classMethods.get(method);
             var p = methodDeclParent.getFormalParameters();
             var c = methodDeclChild.getFormalParameters();
-            if (p.size() == c.size()) {
+            boolean matches = p.size() == c.size();
+            if (matches) {
                 for (int i = 0; i < p.size(); i++) {
                     if(!type(p.get(i).getType()).isSubtypeOf(type(c.get(i).getType()))) {
-                        flag= false;
+                        matches = false;
                     }
                 }
             }
-            else {
+            if(!matches) {
                 flag = false;
-            }
-            if(!flag) {
                 addError(methodDeclChild,methodDeclChild.getName() + " function signature is not matching with parent class");
             }
         }
@@ -506,16 +648,10 @@ public class Analysis extends NQJElement.DefaultVisitor {
     /**
      * This method returns list of child classes for a class
      * @param className This is the name of the Parent class
-     * @return This return set of child class names.Returns null if doesn't exist.
+     * @return This return set of child class names in the order of their declaration.
      */
     public Set<String> getChildClasses(String className) {
-        Set<String> childClassList = new HashSet<>();
-        for (Map.Entry<String,String> item :inhMap.entrySet()) {
-            if (item.getValue().equals(className)) {
-                childClassList.add(item.getKey());
-            }
-        }
-        return childClassList;
+        return new LinkedHashSet<>(context.getClassHierarchy().getChildren(className));
     }
 
     /**
@@ -523,21 +659,7 @@ public class Analysis extends NQJElement.DefaultVisitor {
      * @param className This is the name of the child class
      * @return This returns set of super classes.Returns null if it doesn't inherit.
      */
-    public static Set<String> getParentClass(String className) {
-        Set<String> parentClass = new HashSet<>();
-        if(!isCyclicDependent(className)) {
-            String temp = className;
-            while (temp != null) {
-                 temp = inhMap.get(temp);
-                if (temp!=null) {
-                    parentClass.add(temp);
-                }
-            }
-        }
-        else {
-            var ref = inhMap.get(className);
-            parentClass.add(ref);
-        }
-        return parentClass;
+    public Set<String> getParentClass(String className) {
+        return context.getParentClass(className);
     }
 }
@@ -1,6 +1,9 @@
 package analysis;
 
-/** Array extension for types. */
+/**
+ * Array extension for types.
+ * Instances are interned by {@link NameTable#getArrayType}, one per base type.
+ */
 public class ArrayType extends Type {
     public final Type baseType;
 
@@ -10,6 +13,9 @@ public class ArrayType extends Type {
 
     @Override
     boolean isSubtypeOf(Type other) {
+        if (other == this) {
+            return true;
+        }
         if (other instanceof ArrayType) {
             ArrayType ct = (ArrayType) other;
             return baseType.isSubtypeOf(ct.baseType);
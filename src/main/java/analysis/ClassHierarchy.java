@@ -0,0 +1,255 @@
+package analysis;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import notquitejava.ast.*;
+
+/**
+ * Index of the class hierarchy of a program, built once after the classes are read.
+ *
+ * <p>Cycles of extends clauses are found with Tarjan's algorithm. The classes which do not
+ * inherit from a cycle are sorted topologically, every class after its super class.
+ * In this order the field and method tables of the classes are flattened a single time,
+ * so that a table also contains the inherited members which the class does not redeclare.
+ */
+public class ClassHierarchy {
+
+    private final Map<String, String> superClasses;
+    private final Map<String, ClassObjects> classes;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<String, List<String>> children = new HashMap<>();
+    private final List<String> topologicalOrder = new ArrayList<>();
+    private final List<List<String>> cycles = new ArrayList<>();
+    private final Set<String> cyclic = new HashSet<>();
+    private final Map<String, Integer> preorder = new HashMap<>();
+    private final Map<String, Integer> postorder = new HashMap<>();
+    private final Map<String, Set<String>> ancestors = new ConcurrentHashMap<>();
+
+    /**
+     * Builds the index of the classes of a program.
+     * @param superClasses The name of the super class of every class which extends one
+     * @param classes The class objects by name, with the members declared in the class
+     */
+    public ClassHierarchy(NQJProgram prog, Map<String, String> superClasses,
+            Map<String, ClassObjects> classes) {
+        this.superClasses = superClasses;
+        this.classes = classes;
+        for (NQJClassDecl c : prog.getClassDecls()) {
+            if (positions.putIfAbsent(c.getName(), names.size()) == null) {
+                names.add(c.getName());
+            }
+        }
+        for (String name : names) {
+            String parent = declaredSuperClass(name);
+            if (parent != null) {
+                children.computeIfAbsent(parent, k -> new ArrayList<>()).add(name);
+            }
+        }
+        findCycles();
+        sortTopologically();
+        numberClasses();
+    }
+
+    /**
+     * The super class of a class, if it is declared in the program.
+     */
+    private String declaredSuperClass(String name) {
+        String parent = superClasses.get(name);
+        return parent != null && classes.containsKey(parent) ? parent : null;
+    }
+
+    /**
+     * Tarjan's algorithm without recursion. Every class has at most one super class,
+     * so the depth first search from a class is a path along its super classes.
+     */
+    private void findCycles() {
+        Map<String, Integer> index = new HashMap<>();
+        Map<String, Integer> lowLink = new HashMap<>();
+        Deque<String> stack = new ArrayDeque<>();
+        Set<String> onStack = new HashSet<>();
+        List<String> path = new ArrayList<>();
+        for (String root : names) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            path.clear();
+            String v = root;
+            while (v != null) {
+                index.put(v, index.size());
+                lowLink.put(v, index.get(v));
+                stack.push(v);
+                onStack.add(v);
+                path.add(v);
+                String w = declaredSuperClass(v);
+                if (w != null && index.containsKey(w)) {
+                    if (onStack.contains(w)) {
+                        lowLink.put(v, Math.min(lowLink.get(v), index.get(w)));
+                    }
+                    w = null;
+                }
+                v = w;
+            }
+            // return along the path
+            for (int i = path.size() - 1; i >= 0; i--) {
+                String u = path.get(i);
+                if (i + 1 < path.size()) {
+                    lowLink.put(u, Math.min(lowLink.get(u), lowLink.get(path.get(i + 1))));
+                }
+                if (lowLink.get(u).equals(index.get(u))) {
+                    List<String> component = new ArrayList<>();
+                    String w;
+                    do {
+                        w = stack.pop();
+                        onStack.remove(w);
+                        component.add(w);
+                    } while (!w.equals(u));
+                    if (component.size() > 1 || u.equals(declaredSuperClass(u))) {
+                        component.sort(Comparator.comparing(positions::get));
+                        cycles.add(component);
+                        cyclic.addAll(component);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Orders the classes breadth first from the classes without declared super class.
+     * Classes in cycles and their subclasses are not reached.
+     */
+    private void sortTopologically() {
+        for (String name : names) {
+            if (declaredSuperClass(name) == null) {
+                topologicalOrder.add(name);
+            }
+        }
+        for (int i = 0; i < topologicalOrder.size(); i++) {
+            topologicalOrder.addAll(getChildren(topologicalOrder.get(i)));
+        }
+    }
+
+    /**
+     * Numbers the classes in preorder and postorder of a depth first search from the classes
+     * without declared super class. The numbers of a class lie in the interval of the numbers
+     * of each of its super classes.
+     */
+    private void numberClasses() {
+        int counter = 0;
+        Deque<String> stack = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+        for (String root : topologicalOrder) {
+            if (declaredSuperClass(root) != null) {
+                continue;
+            }
+            preorder.put(root, counter++);
+            stack.push(root);
+            nextChild.push(0);
+            while (!stack.isEmpty()) {
+                List<String> next = getChildren(stack.peek());
+                int i = nextChild.pop();
+                if (i < next.size()) {
+                    nextChild.push(i + 1);
+                    String child = next.get(i);
+                    preorder.put(child, counter++);
+                    stack.push(child);
+                    nextChild.push(0);
+                } else {
+                    postorder.put(stack.pop(), counter++);
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of a class in preorder, or -1 for classes in cycles, their subclasses and
+     * classes which are not declared.
+     */
+    public int getPreorder(String className) {
+        return preorder.getOrDefault(className, -1);
+    }
+
+    /**
+     * The number of a class in postorder, or -1 if the class has no {@link #getPreorder}.
+     */
+    public int getPostorder(String className) {
+        return postorder.getOrDefault(className, -1);
+    }
+
+    /**
+     * Adds the inherited fields and methods to the tables of every class,
+     * unless the class declares a member with the same name.
+     */
+    public void inheritMembers() {
+        for (String name : topologicalOrder) {
+            String parent = declaredSuperClass(name);
+            if (parent == null) {
+                continue;
+            }
+            ClassObjects child = classes.get(name);
+            ClassObjects parentClass = classes.get(parent);
+            parentClass.classVarList.forEach(child.classVarList::putIfAbsent);
+            parentClass.classMethods.forEach(child.classMethods::putIfAbsent);
+        }
+    }
+
+    /**
+     * The cycles of extends clauses, every cycle lists its classes in the order
+     * of their declaration.
+     */
+    public List<List<String>> getCycles() {
+        return cycles;
+    }
+
+    public boolean isCyclic(String className) {
+        return cyclic.contains(className);
+    }
+
+    /**
+     * The classes of the program, every class after its super class.
+     * Classes in cycles and their subclasses are not contained.
+     */
+    public List<String> getTopologicalOrder() {
+        return topologicalOrder;
+    }
+
+    /**
+     * The direct subclasses of a class, in the order of their declaration.
+     */
+    public List<String> getChildren(String className) {
+        return children.getOrDefault(className, Collections.emptyList());
+    }
+
+    /**
+     * Whether the other hierarchy has the same classes in the same order of declaration,
+     * with the same extends clauses. Then both number the classes the same way.
+     */
+    public boolean hasSameShape(ClassHierarchy other) {
+        return names.equals(other.names) && superClasses.equals(other.superClasses);
+    }
+
+    /**
+     * The names of all super classes of a class, computed once per class.
+     * For a class in a cycle only the direct super class is returned.
+     */
+    public Set<String> getSuperClasses(String className) {
+        if (className == null) {
+            return Collections.emptySet();
+        }
+        Set<String> result = ancestors.get(className);
+        if (result == null) {
+            result = new HashSet<>();
+            String parent = superClasses.get(className);
+            if (isCyclic(className)) {
+                result.add(parent);
+                parent = null;
+            }
+            while (parent != null && result.add(parent)) {
+                parent = superClasses.get(parent);
+            }
+            result = Collections.unmodifiableSet(result);
+            ancestors.put(className, result);
+        }
+        return result;
+    }
+}
@@ -12,7 +12,6 @@ public class ClassObjects {
         this.classDecl = classDecl;
     }
 
-    private final Analysis analysis = new Analysis(null);
     public final Map<String,NQJFunctionDecl> classMethods = new HashMap<>();
 
     public final Map<String,NQJVarDecl> classVarList = new HashMap<>();
@@ -1,43 +1,37 @@
 package analysis;
 
-import java.util.Set;
-
+/**
+ * The type of the objects of a class. There is one instance per class and compilation,
+ * see {@link NameTable#getClassType}, so class types are compared by identity.
+ */
 public class ClassType extends Type {
-    private String baseType;
-    private Set<String> superBaseType; //This stores the base type of all super classes
+    private final String baseType;
+    private final ClassHierarchy hierarchy;
+    //The interval of the class in the hierarchy, -1 if it is not numbered
+    private final int preorder;
+    private final int postorder;
 
-    public ClassType(String baseType) {
+    ClassType(String baseType, ClassHierarchy hierarchy) {
         this.baseType = baseType;
-        this.superBaseType = Analysis.getParentClass(this.baseType);
+        this.hierarchy = hierarchy;
+        this.preorder = hierarchy.getPreorder(baseType);
+        this.postorder = hierarchy.getPostorder(baseType);
     }
 
     @Override
     boolean isSubtypeOf(Type other) {
-        if (other instanceof ClassType) {
-            if(((ClassType) other).baseType.equals(this.baseType)) {
-                return true;
-            }
-            else if(isSubTypeofParent(other)) {
-                return true;
-            }
+        if (other == this) {
+            return true;
         }
-        return false;
-    }
-
-    /**
-     * This method performs type checking with super classes
-     * @param other Type of the left expression
-     * @return This returns true if base type matches with one of the super classes
-     */
-    boolean isSubTypeofParent(Type other) {
-        if (this.superBaseType.size()>0){
-            for (var item : this.superBaseType) {
-                if (((ClassType) other).baseType.equals(item)) {
-                    return true;
-                }
-            }
+        if (!(other instanceof ClassType)) {
+            return false;
+        }
+        ClassType o = (ClassType) other;
+        if (preorder >= 0 && o.preorder >= 0) {
+            return o.preorder <= preorder && postorder <= o.postorder;
         }
-        return false;
+        // classes in cycles, their subclasses and classes which are not declared
+        return hierarchy.getSuperClasses(baseType).contains(o.baseType);
     }
 
     public Type getType() {
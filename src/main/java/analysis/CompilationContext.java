@@ -0,0 +1,81 @@
+package analysis;
+
+import java.util.*;
+import minillvm.ast.Proc;
+import notquitejava.ast.NQJClassDecl;
+import notquitejava.ast.NQJFunctionDecl;
+
+/**
+ * State shared by the phases of a single compilation.
+ * A new context is created for every compiled program, so that several compilations
+ * can run concurrently on different threads.
+ */
+public class CompilationContext {
+
+    //This is used to fetch the current class for this expression
+    private final Stack<NQJClassDecl> curClassList = new Stack<>();
+
+    //This is used to check cycle in inheritance
+    private final Map<String, String> inhMap = new HashMap<>();
+
+    //This contains declaration of all classes
+    private final Map<String, ClassObjects> classList = new HashMap<>();
+
+    //Index of inheritance, built once the classes are known
+    private ClassHierarchy classHierarchy;
+
+    //This contains the translated methods of every class
+    private final Map<String, Map<NQJFunctionDecl, Proc>> vTable = new HashMap<>();
+
+    public Stack<NQJClassDecl> getCurClassList() {
+        return curClassList;
+    }
+
+    public Map<String, String> getInhMap() {
+        return inhMap;
+    }
+
+    public Map<String, ClassObjects> getClassList() {
+        return classList;
+    }
+
+    public Map<String, Map<NQJFunctionDecl, Proc>> getVTable() {
+        return vTable;
+    }
+
+    public ClassHierarchy getClassHierarchy() {
+        return classHierarchy;
+    }
+
+    public void setClassHierarchy(ClassHierarchy classHierarchy) {
+        this.classHierarchy = classHierarchy;
+    }
+
+    /**
+     * This method checks for cycle in inheritance.
+     * @param className This is the class name for which cyclic dependency needs to be calculated
+     * @return boolean This return true if the class is part of a cycle
+     */
+    public boolean isCyclicDependent(String className) {
+        return classHierarchy.isCyclic(className);
+    }
+
+    /**
+     * This method returns all the super classes.
+     * @param className This is the name of the child class
+     * @return This returns set of super classes. Returns an empty set if it doesn't inherit.
+     */
+    public Set<String> getParentClass(String className) {
+        return classHierarchy.getSuperClasses(className);
+    }
+
+    /**
+     * Clears the analysis state, the translation state is kept.
+     */
+    public void clearAnalysis() {
+        curClassList.clear();
+        inhMap.clear();
+        classList.clear();
+        classHierarchy = null;
+    }
+}
@@ -0,0 +1,69 @@
+package analysis;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import notquitejava.ast.NQJClassDecl;
+import notquitejava.ast.NQJFunctionDecl;
+
+/**
+ * The declarations which the check of a method or function body looked up.
+ *
+ * <p>While the body is checked the names of the used classes and functions are collected.
+ * Afterwards they are resolved to their declarations, a class together with all its super
+ * classes, whose fields and methods are inherited. A name which was not declared is resolved
+ * to null, so that declaring it later is a change as well.
+ */
+class Dependencies {
+    private final Set<String> classNames = new HashSet<>();
+    private final Set<String> functionNames = new HashSet<>();
+    private final Map<String, NQJClassDecl> classes = new HashMap<>();
+    private final Map<String, NQJFunctionDecl> functions = new HashMap<>();
+
+    void addClass(String className) {
+        classNames.add(className);
+    }
+
+    void addFunction(String functionName) {
+        functionNames.add(functionName);
+    }
+
+    /**
+     * Resolves the collected names to the declarations of the name table.
+     */
+    void resolve(NameTable names) {
+        for (String className : classNames) {
+            classes.put(className, classDecl(names, className));
+            for (String superClass : names.getHierarchy().getSuperClasses(className)) {
+                classes.put(superClass, classDecl(names, superClass));
+            }
+        }
+        for (String functionName : functionNames) {
+            functions.put(functionName, names.lookupFunction(functionName));
+        }
+    }
+
+    /**
+     * Whether all names resolve to the same declarations in the given name table.
+     * Declarations are compared by identity, a declaration parsed again is a change.
+     */
+    boolean isUnchanged(NameTable names) {
+        for (Map.Entry<String, NQJClassDecl> e : classes.entrySet()) {
+            if (classDecl(names, e.getKey()) != e.getValue()) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, NQJFunctionDecl> e : functions.entrySet()) {
+            if (names.lookupFunction(e.getKey()) != e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static NQJClassDecl classDecl(NameTable names, String className) {
+        ClassObjects c = names.lookupClassNode(className);
+        return c == null ? null : c.getClassDecl();
+    }
+}
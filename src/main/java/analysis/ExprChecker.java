@@ -82,7 +82,7 @@ public class ExprChecker implements NQJExpr.Matcher<Type>, NQJExprL.Matcher<Type
             String varName = ((NQJVarUse)obj.getAddress()).getVarName();
             var ref = analysis.lookupVar(varName);
             if (ref == null) {
-                var cRef = analysis.getNameTable().lookupClassNode(analysis.getCurClass()).getField(varName);
+                var cRef = analysis.lookupClassNode(analysis.getCurClass()).getField(varName);
                 if (cRef != null) {
                     className = cRef.getType().getType().toString();
                 }
@@ -98,7 +98,7 @@ public class ExprChecker implements NQJExpr.Matcher<Type>, NQJExprL.Matcher<Type
 
 
             try {
-                NQJFunctionDecl m = analysis.getNameTable().lookupClassNode(className)
+                NQJFunctionDecl m = analysis.lookupClassNode(className)
                         .lookupMethod(methodCall.getMethodName());
                 NQJExprList args = methodCall.getArguments();
                 NQJVarDeclList params = m.getFormalParameters();
@@ -130,8 +130,7 @@ public class ExprChecker implements NQJExpr.Matcher<Type>, NQJExprL.Matcher<Type
 
     @Override
     public Type case_ExprThis(NQJExprThis exprThis) {
-        ClassType obj = new ClassType(analysis.getCurClass());
-        return obj.getType();
+        return analysis.getNameTable().getClassType(analysis.getCurClass());
     }
 
 
@@ -197,7 +196,7 @@ public class ExprChecker implements NQJExpr.Matcher<Type>, NQJExprL.Matcher<Type
 
     @Override
     public Type case_FunctionCall(NQJFunctionCall functionCall) {
-        NQJFunctionDecl m = analysis.getNameTable().lookupFunction(functionCall.getMethodName());
+        NQJFunctionDecl m = analysis.lookupFunction(functionCall.getMethodName());
         if (m == null) {
             analysis.addError(functionCall, "Function " + functionCall.getMethodName()
                     + " does not exists.");
@@ -226,15 +225,15 @@ public class ExprChecker implements NQJExpr.Matcher<Type>, NQJExprL.Matcher<Type
     @Override
     public Type case_NewArray(NQJNewArray newArray) {
         expect(newArray.getArraySize(), Type.INT);
-        ArrayType t = new ArrayType(analysis.type(newArray.getBaseType()));
+        ArrayType t = analysis.getNameTable().getArrayType(analysis.type(newArray.getBaseType()));
         newArray.setArrayType(t);
         return t;
     }
 
     @Override
     public Type case_NewObject(NQJNewObject newObject) {
-        ClassType obj = new ClassType(newObject.getClassName());
-        var classDecl = analysis.getNameTable().lookupClassNode(newObject.getClassName()).getClassDecl();
+        ClassType obj = analysis.getNameTable().getClassType(newObject.getClassName());
+        var classDecl = analysis.lookupClassNode(newObject.getClassName()).getClassDecl();
         newObject.setClassDeclaration(classDecl);
         return obj.getType();
     }
@@ -268,7 +267,7 @@ public class ExprChecker implements NQJExpr.Matcher<Type>, NQJExprL.Matcher<Type
             var ref = analysis.lookupVar(varName);
             if (ref == null)
             {
-                var cRef = analysis.getNameTable().lookupClassNode(analysis.getCurClass()).getField(varName);
+                var cRef = analysis.lookupClassNode(analysis.getCurClass()).getField(varName);
                 className = cRef.getType().getType().toString();
             }
             else {
@@ -281,7 +280,7 @@ public class ExprChecker implements NQJExpr.Matcher<Type>, NQJExprL.Matcher<Type
             className = type.toString();
         }
         try {
-            NQJVarDecl m = analysis.getNameTable().lookupClassNode(className).lookupField(fieldAccess.getFieldName());
+            NQJVarDecl m = analysis.lookupClassNode(className).lookupField(fieldAccess.getFieldName());
             fieldAccess.setVariableDeclaration(m);
             return analysis.type(m.getType());
         }
@@ -298,7 +297,7 @@ public class ExprChecker implements NQJExpr.Matcher<Type>, NQJExprL.Matcher<Type
         if (ref == null) {
             String varName = varUse.getVarName();
             try {
-                var cRef = analysis.getNameTable().lookupClassNode(analysis.getCurClass())
+                var cRef = analysis.lookupClassNode(analysis.getCurClass())
                         .getField(varName);
                 if (cRef == null) {
                     analysis.addError(varUse, "Variable " + varUse.getVarName() + " is not defined.");
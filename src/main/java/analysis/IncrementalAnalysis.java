@@ -0,0 +1,134 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import notquitejava.ast.NQJClassDecl;
+import notquitejava.ast.NQJFunctionDecl;
+import notquitejava.ast.NQJProgram;
+
+/**
+ * Type checks successive versions of a program which is edited in place,
+ * see {@link frontend.NQJFrontend#reparse}.
+ *
+ * <p>The declarations of the classes and functions are checked again on every run, this is
+ * cheap compared to the bodies. For every method and function body the errors are kept
+ * together with the declarations its check looked up, see {@link Dependencies}. A body is
+ * only checked again if it was parsed again or one of these declarations was. Otherwise
+ * its errors and the declarations and types stored in its AST are reused.
+ *
+ * <p>The types of a check are taken over by the next one while the classes and their extends
+ * clauses stay the same. If they change, the types are created again and all bodies are
+ * checked again.
+ */
+public class IncrementalAnalysis {
+
+    private static final class BodyResult {
+        final List<TypeError> errors;
+        final Dependencies dependencies;
+
+        BodyResult(List<TypeError> errors, Dependencies dependencies) {
+            this.errors = errors;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private Map<NQJFunctionDecl, BodyResult> results = new IdentityHashMap<>();
+    private NameTable previousNames;
+    private boolean verify;
+    private int checkedBodies;
+    private int reusedBodies;
+
+    /**
+     * Compares the errors of every check with a check of the whole program and
+     * throws an IllegalStateException if they differ.
+     */
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    /**
+     * The number of bodies checked by the last check.
+     */
+    public int getCheckedBodies() {
+        return checkedBodies;
+    }
+
+    /**
+     * The number of bodies whose results were reused by the last check.
+     */
+    public int getReusedBodies() {
+        return reusedBodies;
+    }
+
+    /**
+     * Checks the program and returns the type errors, in the same order as {@link Analysis}.
+     */
+    public List<TypeError> check(NQJProgram prog) {
+        Analysis analysis = new Analysis(prog);
+        boolean typesReused = analysis.checkDeclarations(previousNames);
+        List<TypeError> errors = analysis.getTypeErrors();
+        Map<NQJFunctionDecl, BodyResult> current = new IdentityHashMap<>();
+        checkedBodies = 0;
+        reusedBodies = 0;
+        for (NQJClassDecl c : prog.getClassDecls()) {
+            errors.addAll(analysis.checkClassHeader(c));
+            for (NQJFunctionDecl m : c.getMethods()) {
+                errors.addAll(checkBody(analysis, c, m, typesReused, current));
+            }
+        }
+        for (NQJFunctionDecl f : prog.getFunctionDecls()) {
+            errors.addAll(checkBody(analysis, null, f, typesReused, current));
+        }
+        results = current;
+        previousNames = analysis.getNameTable();
+        if (verify) {
+            verify(prog, errors);
+        }
+        return errors;
+    }
+
+    private List<TypeError> checkBody(Analysis analysis, NQJClassDecl owner,
+            NQJFunctionDecl body, boolean typesReused, Map<NQJFunctionDecl, BodyResult> current) {
+        BodyResult result = typesReused ? results.get(body) : null;
+        if (result != null && result.dependencies.isUnchanged(analysis.getNameTable())) {
+            reusedBodies++;
+            current.put(body, result);
+            // the body may have moved
+            List<TypeError> errors = new ArrayList<>();
+            for (TypeError e : result.errors) {
+                errors.add(e.getElement() != null
+                        ? new TypeError(e.getElement(), e.getMessage())
+                        : e);
+            }
+            return errors;
+        }
+        checkedBodies++;
+        Dependencies dependencies = new Dependencies();
+        List<TypeError> errors = analysis.checkBody(owner, body, dependencies);
+        dependencies.resolve(analysis.getNameTable());
+        current.put(body, new BodyResult(errors, dependencies));
+        return errors;
+    }
+
+    private void verify(NQJProgram prog, List<TypeError> errors) {
+        Analysis full = new Analysis(prog);
+        // takes over the same types, so that the AST stays decorated as before
+        full.check(previousNames);
+        List<String> expected = messages(full.getTypeErrors());
+        List<String> actual = messages(errors);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("The incremental check found " + actual
+                    + ", but the full check found " + expected);
+        }
+    }
+
+    private static List<String> messages(List<TypeError> errors) {
+        List<String> result = new ArrayList<>();
+        for (TypeError e : errors) {
+            result.add(e.toString());
+        }
+        return result;
+    }
+}
@@ -7,20 +7,28 @@ import notquitejava.ast.*;
  * Name table for analysis class hierarchies.
  */
 public class NameTable {
+    //The types are interned, so that they can be compared by identity
     private final Map<Type, ArrayType> arrayTypes = new HashMap<>();
+    private final Map<String, ClassType> classTypes = new HashMap<>();
 
     private final Map<String, NQJFunctionDecl> globalFunctions = new HashMap<>();
 
+    //The declaration of the built in function
+    private NQJFunctionDecl printInt = NQJ.FunctionDecl(NQJ.TypeInt(), "main",
+            NQJ.VarDeclList(NQJ.VarDecl(NQJ.TypeInt(), "elem")), NQJ.Block());
+
     //This contains declaration of all classes
-    public static final Map<String,ClassObjects> classList = new HashMap<>();
+    private final Map<String,ClassObjects> classList;
 
 
     private final Analysis analysis;
 
+    private final ClassHierarchy hierarchy;
+
     NameTable(Analysis analysis, NQJProgram prog) {
         this.analysis = analysis;
-        globalFunctions.put("printInt", NQJ.FunctionDecl(NQJ.TypeInt(), "main",
-                NQJ.VarDeclList(NQJ.VarDecl(NQJ.TypeInt(), "elem")), NQJ.Block()));
+        this.classList = analysis.getContext().getClassList();
+        globalFunctions.put("printInt", printInt);
         for (NQJFunctionDecl f : prog.getFunctionDecls()) {
             var old = globalFunctions.put(f.getName(), f);
             if (old != null) {
@@ -30,6 +38,16 @@ public class NameTable {
         }
 
         updateCLassList(analysis, prog);
+
+        hierarchy = new ClassHierarchy(prog, analysis.getContext().getInhMap(), classList);
+        analysis.getContext().setClassHierarchy(hierarchy);
+        for (List<String> cycle : hierarchy.getCycles()) {
+            // reported at the class declared last, which closes the cycle
+            NQJClassDecl last = classList.get(cycle.get(cycle.size() - 1)).getClassDecl();
+            analysis.addError(last, "There exist a cyclic dependency with the class "
+                    + ((NQJExtendsClass) last.getExtended()).getName());
+        }
+        hierarchy.inheritMembers();
     }
 
     /**
@@ -64,12 +82,6 @@ public class NameTable {
                 if (value != null) {
                     analysis.addError(c, c.getName() + " is already defined once ");
                 }
-                else {
-                    if (Analysis.isCyclicDependent(c.getName())) {
-                        analysis.addError(c, "There exist a cyclic dependency with the class "
-                                + parentClass);
-                    }
-                }
             }
             var result = classList.put(c.getName(), temp);
             if (result != null) {
@@ -91,25 +103,44 @@ public class NameTable {
         return  classList.get(className);
     }
 
+    public ClassHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
     /**
-     * This method updates the existing class object
-     * This method is called only when a method inherits
-     * @param obj Class Object of the class
-     * @param className name of the class to be updated
+     * Takes over the interned types of the name table of a previous check, if the classes
+     * and their super classes are the same. Then the types stored in the AST by the previous
+     * check stay valid. Must be called before any type is created.
+     * @return true if the types were taken over
      */
-    public void updateClassObject(ClassObjects obj,String className) {
-        classList.remove(className);
-        classList.put(className,obj);
+    boolean reuseTypes(NameTable previous) {
+        if (!hierarchy.hasSameShape(previous.hierarchy)) {
+            return false;
+        }
+        synchronized (previous) {
+            arrayTypes.putAll(previous.arrayTypes);
+            classTypes.putAll(previous.classTypes);
+        }
+        // the calls of the previous check refer to its built in function
+        if (globalFunctions.get("printInt") == printInt) {
+            printInt = previous.printInt;
+            globalFunctions.put("printInt", printInt);
+        }
+        return true;
     }
 
     /**
      * Transform base type to array type.
      */
-    public ArrayType getArrayType(Type baseType) {
-        if (!arrayTypes.containsKey(baseType)) {
-            arrayTypes.put(baseType, new ArrayType(baseType));
-        }
-        return arrayTypes.get(baseType);
+    public synchronized ArrayType getArrayType(Type baseType) {
+        return arrayTypes.computeIfAbsent(baseType, ArrayType::new);
+    }
+
+    /**
+     * Returns the type of a class, there is one instance per class name.
+     */
+    public synchronized ClassType getClassType(String className) {
+        return classTypes.computeIfAbsent(className, name -> new ClassType(name, hierarchy));
     }
 
 }
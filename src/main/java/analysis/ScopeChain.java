@@ -0,0 +1,139 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import notquitejava.ast.NQJVarDecl;
+
+/**
+ * The variables visible while a method is checked, declared in nested scopes.
+ *
+ * <p>Every name maps to its innermost declaration, which links to the declaration it shadows.
+ * The declared names are also logged, and leaving a scope restores the shadowed declarations
+ * of the names declared in it. So a lookup is a single map access, independent of the nesting
+ * depth, entering a scope takes constant time and leaving it takes time proportional to
+ * the number of variables declared in it.
+ */
+public class ScopeChain implements TypeContext {
+
+    private static final class Binding {
+        final VarRef ref;
+        final int scope;
+        final Binding shadowed;
+
+        Binding(VarRef ref, int scope, Binding shadowed) {
+            this.ref = ref;
+            this.scope = scope;
+            this.shadowed = shadowed;
+        }
+    }
+
+    private final Map<String, Binding> bindings = new HashMap<>();
+    private final List<String> declared = new ArrayList<>();
+    //The size of the log when each of the open scopes was entered
+    private int[] scopeStarts = new int[16];
+    private int depth;
+    private Type returnType = Type.INVALID;
+    private Type thisType = Type.INVALID;
+
+    /**
+     * Opens a new innermost scope.
+     */
+    public void enterScope() {
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = declared.size();
+    }
+
+    /**
+     * Closes the innermost scope and removes its variables.
+     */
+    public void exitScope() {
+        int start = scopeStarts[--depth];
+        for (int i = declared.size() - 1; i >= start; i--) {
+            String name = declared.remove(i);
+            Binding shadowed = bindings.get(name).shadowed;
+            if (shadowed == null) {
+                bindings.remove(name);
+            } else {
+                bindings.put(name, shadowed);
+            }
+        }
+    }
+
+    /**
+     * The number of open scopes, the outermost scope is 1.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Removes all scopes and variables.
+     */
+    public void clear() {
+        bindings.clear();
+        declared.clear();
+        depth = 0;
+    }
+
+    /**
+     * Looks up a variable declared directly in the given scope.
+     * Only the declarations shadowed by the name are visited.
+     */
+    public VarRef lookupVar(String varName, int scope) {
+        Binding b = bindings.get(varName);
+        while (b != null && b.scope > scope) {
+            b = b.shadowed;
+        }
+        return b != null && b.scope == scope ? b.ref : null;
+    }
+
+    @Override
+    public VarRef lookupVar(String varUse) {
+        Binding b = bindings.get(varUse);
+        return b == null ? null : b.ref;
+    }
+
+    /**
+     * Declares a variable in the innermost scope.
+     */
+    @Override
+    public void putVar(String varName, Type type, NQJVarDecl var) {
+        bindings.put(varName, new Binding(new VarRef(type, var), depth, bindings.get(varName)));
+        declared.add(varName);
+    }
+
+    /**
+     * Copies the visible variables into a new context.
+     */
+    @Override
+    public TypeContext copy() {
+        Map<String, VarRef> env = new HashMap<>();
+        bindings.forEach((name, binding) -> env.put(name, binding.ref));
+        return new TypeContextImpl(env, returnType, thisType);
+    }
+
+    @Override
+    public Type getReturnType() {
+        return returnType;
+    }
+
+    @Override
+    public void setReturnType(Type returnType) {
+        this.returnType = returnType;
+    }
+
+    @Override
+    public Type getThisType() {
+        return thisType;
+    }
+
+    @Override
+    public void setThisType(Type thisType) {
+        this.thisType = thisType;
+    }
+}
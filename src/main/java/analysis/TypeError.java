@@ -8,12 +8,15 @@ import notquitejava.ast.NQJElement;
  */
 public class TypeError extends RuntimeException {
     private SourcePosition source;
+    //The element the error is reported at, to compute the position again after edits
+    private final transient NQJElement element;
 
     private static final long serialVersionUID = -5769042943398878482L;
 
     public TypeError(String message, int line, int column) {
         super(message);
         this.source = new SourcePosition("", line, column, line, column);
+        this.element = null;
     }
 
     /**
@@ -24,6 +27,7 @@ public class TypeError extends RuntimeException {
      */
     public TypeError(NQJElement element, String message) {
         super(message);
+        this.element = element;
         while (element != null) {
             this.source = element.getSourcePosition();
             if (this.source != null) {
@@ -46,6 +50,13 @@ public class TypeError extends RuntimeException {
         return "Error in line " + getLine() + ":" + getColumn() + ": " + getMessage();
     }
 
+    /**
+     * The AST element the error is reported at, null if the error was created with a position.
+     */
+    public NQJElement getElement() {
+        return element;
+    }
+
     public SourcePosition getSource() {
         return source;
     }
@@ -1,5 +1,6 @@
 package frontend;
 
+import java.util.ArrayList;
 import java.util.List;
 import notquitejava.ast.*;
 
@@ -41,6 +42,35 @@ public class AstHelper {
 
     /** Parsing top level delcaration into a program. */
     public static NQJProgram program(List<NQJTopLevelDecl> decls) {
+        return programOfCopies(copyTopLevelDecls(decls));
+    }
+
+    /**
+     * Copies top level declarations, so that the copies can be added to a new program.
+     */
+    public static List<NQJTopLevelDecl> copyTopLevelDecls(List<NQJTopLevelDecl> decls) {
+        List<NQJTopLevelDecl> copies = new ArrayList<>(decls.size());
+        NQJTopLevelDecl.MatcherVoid copy = new NQJTopLevelDecl.MatcherVoid() {
+            @Override
+            public void case_FunctionDecl(NQJFunctionDecl functionDecl) {
+                copies.add(functionDecl.copy());
+            }
+
+            @Override
+            public void case_ClassDecl(NQJClassDecl classDecl) {
+                copies.add(classDecl.copy());
+            }
+        };
+        for (NQJTopLevelDecl decl : decls) {
+            decl.match(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Creates a program of top level declarations, which must not belong to a tree yet.
+     */
+    public static NQJProgram programOfCopies(List<NQJTopLevelDecl> decls) {
         NQJFunctionDeclList functions = NQJ.FunctionDeclList();
         NQJClassDeclList classDecls = NQJ.ClassDeclList();
 
@@ -48,12 +78,12 @@ public class AstHelper {
             decl.match(new NQJTopLevelDecl.MatcherVoid() {
                 @Override
                 public void case_FunctionDecl(NQJFunctionDecl functionDecl) {
-                    functions.add(functionDecl.copy());
+                    functions.add(functionDecl);
                 }
 
                 @Override
                 public void case_ClassDecl(NQJClassDecl classDecl) {
-                    classDecls.add(classDecl.copy());
+                    classDecls.add(classDecl);
                 }
             });
         }
@@ -9,6 +9,20 @@ import notquitejava.ast.*;
 public class AstPrinter implements NQJElement.Visitor {
     private final StringBuilder out = new StringBuilder();
     private int indent = 0;
+    private boolean firstLineOnly;
+
+    /**
+     * Thrown to stop printing at the end of the first line.
+     */
+    private static class LineEnd extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        LineEnd() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final LineEnd LINE_END = new LineEnd();
 
     /**
      * Printing a generic element.
@@ -22,11 +36,32 @@ public class AstPrinter implements NQJElement.Visitor {
         return printer.out.toString();
     }
 
+    /**
+     * Prints the first line of an element. Printing stops at the first line break,
+     * so nested statements after it are not visited.
+     */
+    public static String printFirstLine(NQJElement ast) {
+        if (ast == null) {
+            return "<null>";
+        }
+        AstPrinter printer = new AstPrinter();
+        printer.firstLineOnly = true;
+        try {
+            ast.accept(printer);
+        } catch (LineEnd e) {
+            // the first line is complete
+        }
+        return printer.out.toString();
+    }
+
     private void print(String s) {
         out.append(s);
     }
 
     private void println() {
+        if (firstLineOnly) {
+            throw LINE_END;
+        }
         out.append("\n");
         out.append("    ".repeat(Math.max(0, indent)));
     }
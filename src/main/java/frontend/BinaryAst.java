@@ -0,0 +1,70 @@
+package frontend;
+
+/**
+ * Tags and constants of the binary AST format written by {@link BinaryAstWriter}
+ * and read by {@link BinaryAstReader}.
+ */
+final class BinaryAst {
+
+    /**
+     * "NQJA" in ASCII.
+     */
+    static final int MAGIC = 0x4E514A41;
+    static final int VERSION = 1;
+
+    /**
+     * Set in the tag byte of a node with a source span.
+     */
+    static final int HAS_SPAN = 0x80;
+
+    static final int NULL = 0;
+    static final int PROGRAM = 1;
+    static final int FUNCTION_DECL = 2;
+    static final int CLASS_DECL = 3;
+    static final int EXTENDS_NOTHING = 4;
+    static final int EXTENDS_CLASS = 5;
+    static final int VAR_DECL = 6;
+    static final int TYPE_ARRAY = 7;
+    static final int TYPE_INT = 8;
+    static final int TYPE_BOOL = 9;
+    static final int TYPE_CLASS = 10;
+    static final int STMT_IF = 11;
+    static final int STMT_WHILE = 12;
+    static final int STMT_RETURN = 13;
+    static final int STMT_EXPR = 14;
+    static final int STMT_ASSIGN = 15;
+    static final int ARRAY_LOOKUP = 16;
+    static final int FIELD_ACCESS = 17;
+    static final int VAR_USE = 18;
+    static final int READ = 19;
+    static final int EXPR_BINARY = 20;
+    static final int EXPR_UNARY = 21;
+    static final int ARRAY_LENGTH = 22;
+    static final int METHOD_CALL = 23;
+    static final int FUNCTION_CALL = 24;
+    static final int BOOL_CONST = 25;
+    static final int NUMBER = 26;
+    static final int EXPR_THIS = 27;
+    static final int EXPR_NULL = 28;
+    static final int NEW_ARRAY = 29;
+    static final int NEW_OBJECT = 30;
+    static final int AND = 31;
+    static final int PLUS = 32;
+    static final int MINUS = 33;
+    static final int TIMES = 34;
+    static final int DIV = 35;
+    static final int LESS = 36;
+    static final int EQUALS = 37;
+    static final int UNARY_MINUS = 38;
+    static final int NEGATE = 39;
+    static final int TOP_LEVEL_DECL_LIST = 40;
+    static final int CLASS_DECL_LIST = 41;
+    static final int MEMBER_DECL_LIST = 42;
+    static final int VAR_DECL_LIST = 43;
+    static final int FUNCTION_DECL_LIST = 44;
+    static final int BLOCK = 45;
+    static final int EXPR_LIST = 46;
+
+    private BinaryAst() {
+    }
+}
@@ -0,0 +1,309 @@
+package frontend;
+
+import static frontend.BinaryAst.*;
+import static notquitejava.ast.NQJ.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import notquitejava.ast.*;
+
+/**
+ * Reads an AST written by {@link BinaryAstWriter}.
+ *
+ * <p>The reader recurses once per nesting level of the tree, like the parsers. Deeply nested
+ * programs have to be read on a thread with a large stack, see {@link CompilerThread}.
+ * The lengths of strings are checked against the remaining input before anything is
+ * allocated for them, so an invalid input cannot allocate more than its own size.
+ */
+public class BinaryAstReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    /**
+     * The number of bytes of the input not read into the buffer yet,
+     * {@link Long#MAX_VALUE} if the length of the input is not known.
+     */
+    private long unread;
+    private String[] strings = new String[256];
+    private int stringCount;
+    private int previousStart;
+
+    public BinaryAstReader(InputStream in) {
+        this(in, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a reader for an input of the given length in bytes.
+     */
+    public BinaryAstReader(InputStream in, long length) {
+        this.in = in;
+        this.unread = length;
+    }
+
+    /**
+     * Reads a program. The spans of its elements refer to the given source text,
+     * which may be null if the text is not available.
+     *
+     * @throws IOException if the input is not a valid binary AST
+     */
+    public NQJProgram read(SourceText text) throws IOException {
+        if (readInt() != MAGIC) {
+            throw new IOException("Not a binary NQJ AST");
+        }
+        int version = readVarint();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary AST version " + version);
+        }
+        NQJProgram program;
+        try {
+            program = child();
+        } catch (ClassCastException e) {
+            throw new IOException("Unexpected node in binary AST", e);
+        }
+        if (program == null) {
+            throw new IOException("Missing program");
+        }
+        program.setSourceText(text);
+        return program;
+    }
+
+    /**
+     * Reads a program from a byte array.
+     */
+    public static NQJProgram fromBytes(byte[] data, SourceText text) throws IOException {
+        return new BinaryAstReader(new ByteArrayInputStream(data), data.length).read(text);
+    }
+
+    private int readByte() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buffer, 0, BUFFER_SIZE);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw new IOException("Unexpected end of binary AST");
+            }
+            if (unread != Long.MAX_VALUE) {
+                unread -= limit;
+            }
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    private int readInt() throws IOException {
+        return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    private int readVarint() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private int readSigned() throws IOException {
+        int v = readVarint();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private String readString() throws IOException {
+        int index = readVarint();
+        if (index > 0) {
+            if (index > stringCount) {
+                throw new IOException("Invalid string reference " + index);
+            }
+            return strings[index - 1];
+        }
+        int length = readVarint();
+        // every char takes at least one byte
+        if (length < 0 || length - (limit - pos) > unread) {
+            throw new IOException("Invalid string length " + length);
+        }
+        // grows with the chars actually read if the length of the input is not known
+        StringBuilder sb = new StringBuilder(Math.min(length, BUFFER_SIZE));
+        for (int i = 0; i < length; i++) {
+            sb.append((char) readVarint());
+        }
+        String s = sb.toString();
+        if (stringCount == strings.length) {
+            strings = Arrays.copyOf(strings, stringCount * 2);
+        }
+        strings[stringCount++] = s;
+        return s;
+    }
+
+    /**
+     * Reads a node of the type expected by the caller. The caller casts the node,
+     * a node of another type is reported by {@link #read}.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends NQJElement> T child() throws IOException {
+        return (T) node();
+    }
+
+    private NQJElement node() throws IOException {
+        int tag = readByte();
+        long span = SourceText.NO_SPAN;
+        if ((tag & HAS_SPAN) != 0) {
+            int start = previousStart + readSigned();
+            span = SourceText.span(start, start + readSigned());
+            previousStart = start;
+            tag &= ~HAS_SPAN;
+        }
+        NQJElement e = element(tag);
+        if (e != null) {
+            e.setSourceSpan(span);
+        }
+        return e;
+    }
+
+    private NQJElement element(int tag) throws IOException {
+        switch (tag) {
+            case NULL:
+                return null;
+            case PROGRAM:
+                return Program(child(), child());
+            case FUNCTION_DECL:
+                return FunctionDecl(child(), readString(),
+                        child(), child());
+            case CLASS_DECL:
+                return ClassDecl(readString(), child(),
+                        child(), child());
+            case EXTENDS_NOTHING:
+                return ExtendsNothing();
+            case EXTENDS_CLASS:
+                return ExtendsClass(readString());
+            case VAR_DECL:
+                return VarDecl(child(), readString());
+            case TYPE_ARRAY:
+                return TypeArray(child());
+            case TYPE_INT:
+                return TypeInt();
+            case TYPE_BOOL:
+                return TypeBool();
+            case TYPE_CLASS:
+                return TypeClass(readString());
+            case STMT_IF:
+                return StmtIf(child(), child(),
+                        child());
+            case STMT_WHILE:
+                return StmtWhile(child(), child());
+            case STMT_RETURN:
+                return StmtReturn(child());
+            case STMT_EXPR:
+                return StmtExpr(child());
+            case STMT_ASSIGN:
+                return StmtAssign(child(), child());
+            case ARRAY_LOOKUP:
+                return ArrayLookup(child(), child());
+            case FIELD_ACCESS:
+                return FieldAccess(child(), readString());
+            case VAR_USE:
+                return VarUse(readString());
+            case READ:
+                return Read(child());
+            case EXPR_BINARY:
+                return ExprBinary(child(), child(),
+                        child());
+            case EXPR_UNARY:
+                return ExprUnary(child(), child());
+            case ARRAY_LENGTH:
+                return ArrayLength(child());
+            case METHOD_CALL:
+                return MethodCall(child(), readString(), child());
+            case FUNCTION_CALL:
+                return FunctionCall(readString(), child());
+            case BOOL_CONST:
+                return BoolConst(readByte() != 0);
+            case NUMBER:
+                return Number(readSigned());
+            case EXPR_THIS:
+                return ExprThis();
+            case EXPR_NULL:
+                return ExprNull();
+            case NEW_ARRAY:
+                return NewArray(child(), child());
+            case NEW_OBJECT:
+                return NewObject(readString());
+            case AND:
+                return And();
+            case PLUS:
+                return Plus();
+            case MINUS:
+                return Minus();
+            case TIMES:
+                return Times();
+            case DIV:
+                return Div();
+            case LESS:
+                return Less();
+            case EQUALS:
+                return Equals();
+            case UNARY_MINUS:
+                return UnaryMinus();
+            case NEGATE:
+                return Negate();
+            case TOP_LEVEL_DECL_LIST: {
+                NQJTopLevelDeclList list = TopLevelDeclList();
+                for (int n = readVarint(); n > 0; n--) {
+                    list.add(child());
+                }
+                return list;
+            }
+            case CLASS_DECL_LIST: {
+                NQJClassDeclList list = ClassDeclList();
+                for (int n = readVarint(); n > 0; n--) {
+                    list.add(child());
+                }
+                return list;
+            }
+            case MEMBER_DECL_LIST: {
+                NQJMemberDeclList list = MemberDeclList();
+                for (int n = readVarint(); n > 0; n--) {
+                    list.add(child());
+                }
+                return list;
+            }
+            case VAR_DECL_LIST: {
+                NQJVarDeclList list = VarDeclList();
+                for (int n = readVarint(); n > 0; n--) {
+                    list.add(child());
+                }
+                return list;
+            }
+            case FUNCTION_DECL_LIST: {
+                NQJFunctionDeclList list = FunctionDeclList();
+                for (int n = readVarint(); n > 0; n--) {
+                    list.add(child());
+                }
+                return list;
+            }
+            case BLOCK: {
+                NQJBlock list = Block();
+                for (int n = readVarint(); n > 0; n--) {
+                    list.add(child());
+                }
+                return list;
+            }
+            case EXPR_LIST: {
+                NQJExprList list = ExprList();
+                for (int n = readVarint(); n > 0; n--) {
+                    list.add(child());
+                }
+                return list;
+            }
+            default:
+                throw new IOException("Invalid binary AST tag " + tag);
+        }
+    }
+}
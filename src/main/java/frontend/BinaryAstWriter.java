@@ -0,0 +1,428 @@
+package frontend;
+
+import static frontend.BinaryAst.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import notquitejava.ast.*;
+
+/**
+ * Writes a NotQuiteJava AST in a compact binary format, which is read by
+ * {@link BinaryAstReader} much faster than the source can be parsed.
+ *
+ * <p>The format starts with {@link BinaryAst#MAGIC} and {@link BinaryAst#VERSION}, followed
+ * by the nodes in pre-order. A node is a tag byte, its source span if the tag has
+ * {@link BinaryAst#HAS_SPAN} set, and its fields in declaration order. Lists store their size
+ * followed by their elements. All integers are varints, signed ones zigzag encoded.
+ *
+ * <p>A span is stored as the difference of its start to the start of the previous span and
+ * its length. Strings are collected in a table while writing: the first occurrence is
+ * written as 0, its length and its chars, later occurrences as their index in the table + 1.
+ * Analysis results stored in attributes are not written.
+ *
+ * <p>The writer recurses once per nesting level of the tree. Deeply nested programs have to
+ * be written on a thread with a large stack, see {@link CompilerThread}.
+ */
+public class BinaryAstWriter implements NQJElement.Visitor {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int length;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private int previousStart;
+
+    public BinaryAstWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a program to the stream and flushes it.
+     */
+    public void write(NQJProgram program) throws IOException {
+        try {
+            writeInt(MAGIC);
+            writeVarint(VERSION);
+            program.accept(this);
+            flushBuffer();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the binary representation of a program.
+     */
+    public static byte[] toBytes(NQJProgram program) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new BinaryAstWriter(out).write(program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private void flushBuffer() {
+        try {
+            out.write(buffer, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        length = 0;
+    }
+
+    private void writeByte(int b) {
+        if (length == BUFFER_SIZE) {
+            flushBuffer();
+        }
+        buffer[length++] = (byte) b;
+    }
+
+    private void writeInt(int v) {
+        writeByte(v >>> 24);
+        writeByte(v >>> 16);
+        writeByte(v >>> 8);
+        writeByte(v);
+    }
+
+    private void writeVarint(int v) {
+        while ((v & ~0x7F) != 0) {
+            writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    private void writeSigned(int v) {
+        writeVarint((v << 1) ^ (v >> 31));
+    }
+
+    private void writeString(String s) {
+        Integer index = strings.get(s);
+        if (index != null) {
+            writeVarint(index + 1);
+            return;
+        }
+        strings.put(s, strings.size());
+        writeVarint(0);
+        writeVarint(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            writeVarint(s.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the tag and the span of a node.
+     */
+    private void node(int tag, NQJElement e) {
+        long span = e.getSourceSpan();
+        if (span == SourceText.NO_SPAN) {
+            writeByte(tag);
+            return;
+        }
+        writeByte(tag | HAS_SPAN);
+        int start = SourceText.start(span);
+        writeSigned(start - previousStart);
+        writeSigned(SourceText.end(span) - start);
+        previousStart = start;
+    }
+
+    private void child(NQJElement e) {
+        if (e == null) {
+            writeByte(NULL);
+        } else {
+            e.accept(this);
+        }
+    }
+
+    private void list(int tag, NQJElement list) {
+        node(tag, list);
+        writeVarint(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            child(list.get(i));
+        }
+    }
+
+    @Override
+    public void visit(NQJProgram program) {
+        node(PROGRAM, program);
+        child(program.getClassDecls());
+        child(program.getFunctionDecls());
+    }
+
+    @Override
+    public void visit(NQJFunctionDecl functionDecl) {
+        node(FUNCTION_DECL, functionDecl);
+        child(functionDecl.getReturnType());
+        writeString(functionDecl.getName());
+        child(functionDecl.getFormalParameters());
+        child(functionDecl.getMethodBody());
+    }
+
+    @Override
+    public void visit(NQJClassDecl classDecl) {
+        node(CLASS_DECL, classDecl);
+        writeString(classDecl.getName());
+        child(classDecl.getExtended());
+        child(classDecl.getFields());
+        child(classDecl.getMethods());
+    }
+
+    @Override
+    public void visit(NQJExtendsNothing extendsNothing) {
+        node(EXTENDS_NOTHING, extendsNothing);
+    }
+
+    @Override
+    public void visit(NQJExtendsClass extendsClass) {
+        node(EXTENDS_CLASS, extendsClass);
+        writeString(extendsClass.getName());
+    }
+
+    @Override
+    public void visit(NQJVarDecl varDecl) {
+        node(VAR_DECL, varDecl);
+        child(varDecl.getType());
+        writeString(varDecl.getName());
+    }
+
+    @Override
+    public void visit(NQJTypeArray typeArray) {
+        node(TYPE_ARRAY, typeArray);
+        child(typeArray.getComponentType());
+    }
+
+    @Override
+    public void visit(NQJTypeInt typeInt) {
+        node(TYPE_INT, typeInt);
+    }
+
+    @Override
+    public void visit(NQJTypeBool typeBool) {
+        node(TYPE_BOOL, typeBool);
+    }
+
+    @Override
+    public void visit(NQJTypeClass typeClass) {
+        node(TYPE_CLASS, typeClass);
+        writeString(typeClass.getName());
+    }
+
+    @Override
+    public void visit(NQJStmtIf stmtIf) {
+        node(STMT_IF, stmtIf);
+        child(stmtIf.getCondition());
+        child(stmtIf.getIfTrue());
+        child(stmtIf.getIfFalse());
+    }
+
+    @Override
+    public void visit(NQJStmtWhile stmtWhile) {
+        node(STMT_WHILE, stmtWhile);
+        child(stmtWhile.getCondition());
+        child(stmtWhile.getLoopBody());
+    }
+
+    @Override
+    public void visit(NQJStmtReturn stmtReturn) {
+        node(STMT_RETURN, stmtReturn);
+        child(stmtReturn.getResult());
+    }
+
+    @Override
+    public void visit(NQJStmtExpr stmtExpr) {
+        node(STMT_EXPR, stmtExpr);
+        child(stmtExpr.getExpr());
+    }
+
+    @Override
+    public void visit(NQJStmtAssign stmtAssign) {
+        node(STMT_ASSIGN, stmtAssign);
+        child(stmtAssign.getAddress());
+        child(stmtAssign.getValue());
+    }
+
+    @Override
+    public void visit(NQJArrayLookup arrayLookup) {
+        node(ARRAY_LOOKUP, arrayLookup);
+        child(arrayLookup.getArrayExpr());
+        child(arrayLookup.getArrayIndex());
+    }
+
+    @Override
+    public void visit(NQJFieldAccess fieldAccess) {
+        node(FIELD_ACCESS, fieldAccess);
+        child(fieldAccess.getReceiver());
+        writeString(fieldAccess.getFieldName());
+    }
+
+    @Override
+    public void visit(NQJVarUse varUse) {
+        node(VAR_USE, varUse);
+        writeString(varUse.getVarName());
+    }
+
+    @Override
+    public void visit(NQJRead read) {
+        node(READ, read);
+        child(read.getAddress());
+    }
+
+    @Override
+    public void visit(NQJExprBinary exprBinary) {
+        node(EXPR_BINARY, exprBinary);
+        child(exprBinary.getLeft());
+        child(exprBinary.getOperator());
+        child(exprBinary.getRight());
+    }
+
+    @Override
+    public void visit(NQJExprUnary exprUnary) {
+        node(EXPR_UNARY, exprUnary);
+        child(exprUnary.getUnaryOperator());
+        child(exprUnary.getExpr());
+    }
+
+    @Override
+    public void visit(NQJArrayLength arrayLength) {
+        node(ARRAY_LENGTH, arrayLength);
+        child(arrayLength.getArrayExpr());
+    }
+
+    @Override
+    public void visit(NQJMethodCall methodCall) {
+        node(METHOD_CALL, methodCall);
+        child(methodCall.getReceiver());
+        writeString(methodCall.getMethodName());
+        child(methodCall.getArguments());
+    }
+
+    @Override
+    public void visit(NQJFunctionCall functionCall) {
+        node(FUNCTION_CALL, functionCall);
+        writeString(functionCall.getMethodName());
+        child(functionCall.getArguments());
+    }
+
+    @Override
+    public void visit(NQJBoolConst boolConst) {
+        node(BOOL_CONST, boolConst);
+        writeByte(boolConst.getBoolValue() ? 1 : 0);
+    }
+
+    @Override
+    public void visit(NQJNumber number) {
+        node(NUMBER, number);
+        writeSigned(number.getIntValue());
+    }
+
+    @Override
+    public void visit(NQJExprThis exprThis) {
+        node(EXPR_THIS, exprThis);
+    }
+
+    @Override
+    public void visit(NQJExprNull exprNull) {
+        node(EXPR_NULL, exprNull);
+    }
+
+    @Override
+    public void visit(NQJNewArray newArray) {
+        node(NEW_ARRAY, newArray);
+        child(newArray.getBaseType());
+        child(newArray.getArraySize());
+    }
+
+    @Override
+    public void visit(NQJNewObject newObject) {
+        node(NEW_OBJECT, newObject);
+        writeString(newObject.getClassName());
+    }
+
+    @Override
+    public void visit(NQJAnd and) {
+        node(AND, and);
+    }
+
+    @Override
+    public void visit(NQJPlus plus) {
+        node(PLUS, plus);
+    }
+
+    @Override
+    public void visit(NQJMinus minus) {
+        node(MINUS, minus);
+    }
+
+    @Override
+    public void visit(NQJTimes times) {
+        node(TIMES, times);
+    }
+
+    @Override
+    public void visit(NQJDiv div) {
+        node(DIV, div);
+    }
+
+    @Override
+    public void visit(NQJLess less) {
+        node(LESS, less);
+    }
+
+    @Override
+    public void visit(NQJEquals equals) {
+        node(EQUALS, equals);
+    }
+
+    @Override
+    public void visit(NQJUnaryMinus unaryMinus) {
+        node(UNARY_MINUS, unaryMinus);
+    }
+
+    @Override
+    public void visit(NQJNegate negate) {
+        node(NEGATE, negate);
+    }
+
+    @Override
+    public void visit(NQJTopLevelDeclList topLevelDeclList) {
+        list(TOP_LEVEL_DECL_LIST, topLevelDeclList);
+    }
+
+    @Override
+    public void visit(NQJClassDeclList classDeclList) {
+        list(CLASS_DECL_LIST, classDeclList);
+    }
+
+    @Override
+    public void visit(NQJMemberDeclList memberDeclList) {
+        list(MEMBER_DECL_LIST, memberDeclList);
+    }
+
+    @Override
+    public void visit(NQJVarDeclList varDeclList) {
+        list(VAR_DECL_LIST, varDeclList);
+    }
+
+    @Override
+    public void visit(NQJFunctionDeclList functionDeclList) {
+        list(FUNCTION_DECL_LIST, functionDeclList);
+    }
+
+    @Override
+    public void visit(NQJBlock block) {
+        list(BLOCK, block);
+    }
+
+    @Override
+    public void visit(NQJExprList exprList) {
+        list(EXPR_LIST, exprList);
+    }
+}
@@ -0,0 +1,207 @@
+package frontend;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs compiler phases on a thread with a large stack.
+ *
+ * <p>The parsers, the type checker, the translator and the AST printer recurse once per
+ * nesting level of statements and expressions. Machine generated programs with long
+ * operator chains or thousands of nested blocks overflow the default thread stack,
+ * so the phases run on a dedicated thread whose stack grows with the input.
+ * The stack is only reserved, memory is committed as deep as the recursion goes.
+ *
+ * <p>Phases which split their work use a pool of such threads, see {@link #newPool}.
+ * The cpu time and allocation of the pool tasks are added up for the thread which created
+ * the pool, see {@link #poolUsage()}.
+ */
+public final class CompilerThread extends Thread {
+
+    /**
+     * Enough for nesting depths of several 100000 levels.
+     */
+    public static final long DEFAULT_STACK_SIZE = 1L << 30;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final ThreadLocal<PoolUsage> POOL_USAGE =
+            ThreadLocal.withInitial(PoolUsage::new);
+
+    private final Callable<?> task;
+    private Object result;
+    private Throwable failure;
+
+    private CompilerThread(Callable<?> task, long stackSize) {
+        super(null, null, "nqj-compiler", stackSize);
+        this.task = task;
+        setDaemon(true);
+    }
+
+    /**
+     * Creates a worker thread of a pool, which runs the given runnable.
+     */
+    private CompilerThread(Runnable worker, long stackSize) {
+        super(null, worker, "nqj-compiler-worker", stackSize);
+        this.task = null;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        if (task == null) {
+            super.run();
+            return;
+        }
+        try {
+            result = task.call();
+        } catch (Throwable t) {
+            failure = t;
+        }
+    }
+
+    /**
+     * Runs a task on a thread with the default stack size and returns its result.
+     */
+    public static <T> T call(Callable<T> task) throws Exception {
+        return call(DEFAULT_STACK_SIZE, task);
+    }
+
+    /**
+     * Runs a task on a thread with the given stack size in bytes and returns its result.
+     * Exceptions thrown by the task are rethrown. If the calling thread is already a
+     * compiler thread, the task runs directly.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T call(long stackSize, Callable<T> task) throws Exception {
+        if (Thread.currentThread() instanceof CompilerThread) {
+            return task.call();
+        }
+        CompilerThread thread = new CompilerThread(task, stackSize);
+        thread.start();
+        thread.join();
+        if (thread.failure instanceof Exception) {
+            throw (Exception) thread.failure;
+        }
+        if (thread.failure instanceof Error) {
+            throw (Error) thread.failure;
+        }
+        return (T) thread.result;
+    }
+
+    /**
+     * Creates a fixed size pool whose threads have the given stack size in bytes.
+     * The costs of the submitted tasks are added to the {@link #poolUsage()} of the
+     * calling thread. The pool must be shut down by the caller.
+     */
+    public static ExecutorService newPool(int threads, long stackSize) {
+        PoolUsage usage = POOL_USAGE.get();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), worker -> new CompilerThread(worker, stackSize)) {
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Callable<T> task) {
+                // measured inside the task, so the costs are added before it completes
+                return super.newTaskFor(() -> usage.measure(task));
+            }
+
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Runnable task, T value) {
+                return newTaskFor(Executors.callable(task, value));
+            }
+        };
+    }
+
+    /**
+     * The costs of the tasks submitted to the pools which the current thread created.
+     */
+    public static PoolUsage poolUsage() {
+        return POOL_USAGE.get();
+    }
+
+    /**
+     * The cpu time and the allocated bytes of pool tasks.
+     * Both stay 0 if the JVM cannot measure them per thread.
+     */
+    public static final class PoolUsage {
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        public long getCpuNanos() {
+            return cpuNanos.sum();
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.sum();
+        }
+
+        private <T> T measure(Callable<T> task) throws Exception {
+            long cpuStart = cpuTime();
+            long allocStart = allocatedBytes();
+            try {
+                return task.call();
+            } finally {
+                if (cpuStart >= 0) {
+                    cpuNanos.add(cpuTime() - cpuStart);
+                }
+                if (allocStart >= 0) {
+                    allocatedBytes.add(allocatedBytes() - allocStart);
+                }
+            }
+        }
+    }
+
+    /**
+     * The cpu time of the current thread in nanoseconds, or -1 if it is not supported.
+     */
+    public static long cpuTime() {
+        if (!THREADS.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return THREADS.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * The bytes allocated by the current thread, or -1 if it is not supported.
+     */
+    public static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Waits for a task submitted to a pool and returns its result.
+     * Runtime exceptions and errors thrown by the task are rethrown, other exceptions are
+     * wrapped into an IllegalStateException.
+     */
+    public static <T> T join(Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a compiler task");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package frontend;
+
+import static notquitejava.syntax.NotQuiteJavaParserSym.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+
+/**
+ * Hand-written scanner producing the same tokens as the generated
+ * {@link notquitejava.syntax.Lexer}. The left and right of each symbol are the start
+ * and end offset of the token, see {@link SourceText} for lines and columns.
+ *
+ * <p>The scanner works on a char array of the whole input. Keywords are recognized with
+ * a perfect hash over their first, second and last character and their length, without
+ * creating a string. Identifiers and numbers are interned, so repeated names share one
+ * string.
+ */
+public class FastLexer implements Scanner {
+
+    private static final int KEYWORD_TABLE_SIZE = 256;
+    private static final char[][] KEYWORDS = new char[KEYWORD_TABLE_SIZE][];
+    private static final int[] KEYWORD_CODES = new int[KEYWORD_TABLE_SIZE];
+
+    static {
+        addKeyword("abstract", ABSTRACT);
+        addKeyword("continue", CONTINUE);
+        addKeyword("for", FOR);
+        addKeyword("new", NEW);
+        addKeyword("switch", SWITCH);
+        addKeyword("assert", ASSERT);
+        addKeyword("default", DEFAULT);
+        addKeyword("if", IF);
+        addKeyword("package", PACKAGE);
+        addKeyword("synchronized", SYNCHRONIZED);
+        addKeyword("boolean", BOOLEAN);
+        addKeyword("do", DO);
+        addKeyword("goto", GOTO);
+        addKeyword("private", PRIVATE);
+        addKeyword("this", THIS);
+        addKeyword("break", BREAK);
+        addKeyword("double", DOUBLE);
+        addKeyword("implements", IMPLEMENTS);
+        addKeyword("protected", PROTECTED);
+        addKeyword("throw", THROW);
+        addKeyword("byte", BYTE);
+        addKeyword("else", ELSE);
+        addKeyword("import", IMPORT);
+        addKeyword("public", PUBLIC);
+        addKeyword("throws", THROWS);
+        addKeyword("case", CASE);
+        addKeyword("enum", ENUM);
+        addKeyword("instanceof", INSTANCEOF);
+        addKeyword("return", RETURN);
+        addKeyword("transient", TRANSIENT);
+        addKeyword("catch", CATCH);
+        addKeyword("extends", EXTENDS);
+        addKeyword("int", INT);
+        addKeyword("short", SHORT);
+        addKeyword("try", TRY);
+        addKeyword("char", CHAR);
+        addKeyword("final", FINAL);
+        addKeyword("interface", INTERFACE);
+        addKeyword("static", STATIC);
+        addKeyword("void", VOID);
+        addKeyword("class", CLASS);
+        addKeyword("finally", FINALLY);
+        addKeyword("long", LONG);
+        addKeyword("strictfp", STRICTFP);
+        addKeyword("volatile", VOLATILE);
+        addKeyword("const", CONST);
+        addKeyword("float", FLOAT);
+        addKeyword("native", NATIVE);
+        addKeyword("super", SUPER);
+        addKeyword("while", WHILE);
+        addKeyword("length", LENGTH);
+        addKeyword("true", TRUE);
+        addKeyword("false", FALSE);
+        addKeyword("null", NULL);
+    }
+
+    private final char[] input;
+    private final int end;
+    private int pos;
+
+    // interned identifiers and numbers, open addressing
+    private String[] names = new String[256];
+    private int nameCount;
+
+    /**
+     * Creates a scanner for the first length chars of the array.
+     */
+    public FastLexer(char[] input, int length) {
+        this(input, 0, length);
+    }
+
+    /**
+     * Creates a scanner for the chars input[start..end). The offsets of the tokens
+     * refer to the whole array.
+     */
+    public FastLexer(char[] input, int start, int end) {
+        this.input = input;
+        this.pos = start;
+        this.end = end;
+    }
+
+    public FastLexer(Reader in) throws IOException {
+        this(SourceText.read("unknown", in));
+    }
+
+    private FastLexer(SourceText text) {
+        this(text.getChars(), text.getLength());
+    }
+
+    private static int keywordHash(char first, char second, char last, int length) {
+        return (first + 20 * second + 13 * last + length) & (KEYWORD_TABLE_SIZE - 1);
+    }
+
+    private static void addKeyword(String keyword, int code) {
+        int h = keywordHash(keyword.charAt(0), keyword.charAt(1),
+                keyword.charAt(keyword.length() - 1), keyword.length());
+        if (KEYWORDS[h] != null) {
+            throw new IllegalStateException("Keyword hash collision: " + keyword);
+        }
+        KEYWORDS[h] = keyword.toCharArray();
+        KEYWORD_CODES[h] = code;
+    }
+
+    /**
+     * Returns the keyword token of the identifier input[start..end), or -1.
+     */
+    private int keyword(int start, int end) {
+        int length = end - start;
+        if (length < 2) {
+            return -1;
+        }
+        int h = keywordHash(input[start], input[start + 1], input[end - 1], length);
+        char[] keyword = KEYWORDS[h];
+        if (keyword == null || keyword.length != length) {
+            return -1;
+        }
+        for (int i = 2; i < length - 1; i++) {
+            if (keyword[i] != input[start + i]) {
+                return -1;
+            }
+        }
+        // the hash only separates the keywords, compare the hashed characters, too
+        if (keyword[0] != input[start] || keyword[1] != input[start + 1]
+                || keyword[length - 1] != input[end - 1]) {
+            return -1;
+        }
+        return KEYWORD_CODES[h];
+    }
+
+    /**
+     * Returns the string input[start..end), sharing strings with equal content.
+     */
+    private String intern(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + input[i];
+        }
+        int mask = names.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            String name = names[i];
+            if (name == null) {
+                name = new String(input, start, end - start);
+                names[i] = name;
+                if (++nameCount * 2 > names.length) {
+                    rehash();
+                }
+                return name;
+            }
+            if (name.hashCode() == hash && equals(name, start, end)) {
+                return name;
+            }
+        }
+    }
+
+    private boolean equals(String name, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i - start) != input[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        String[] old = names;
+        names = new String[old.length * 2];
+        int mask = names.length - 1;
+        for (String name : old) {
+            if (name != null) {
+                int i = name.hashCode() & mask;
+                while (names[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                names[i] = name;
+            }
+        }
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isWhiteSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+    }
+
+    /**
+     * Returns the end of the comment starting at start, or -1 if there is none.
+     */
+    private int commentEnd(int start) {
+        if (start + 1 >= end || input[start] != '/') {
+            return -1;
+        }
+        if (input[start + 1] == '/') {
+            int i = start + 2;
+            while (i < end && input[i] != '\n' && input[i] != '\r') {
+                i++;
+            }
+            if (i < end && input[i] == '\r') {
+                i++;
+                if (i < end && input[i] == '\n') {
+                    i++;
+                }
+            } else if (i < end) {
+                i++;
+            }
+            return i;
+        }
+        if (input[start + 1] == '*') {
+            for (int i = start + 2; i + 1 < end; i++) {
+                if (input[i] == '*' && input[i + 1] == '/') {
+                    return i + 2;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the end of "[" followed by white space and comments and "]", or -1.
+     */
+    private int emptyBracketsEnd(int start) {
+        int i = start + 1;
+        while (i < end) {
+            char c = input[i];
+            if (c == ']') {
+                return i + 1;
+            } else if (isWhiteSpace(c)) {
+                i++;
+            } else {
+                int comment = commentEnd(i);
+                if (comment < 0) {
+                    return -1;
+                }
+                i = comment;
+            }
+        }
+        return -1;
+    }
+
+    private Symbol symbol(int code, int tokenEnd, Object value) {
+        Symbol symbol = new Symbol(code, pos, tokenEnd, value);
+        pos = tokenEnd;
+        return symbol;
+    }
+
+    @Override
+    public Symbol next_token() {
+        while (pos < end) {
+            int start = pos;
+            char c = input[start];
+            if (isIdentifierStart(c)) {
+                int i = start + 1;
+                while (i < end && isIdentifierPart(input[i])) {
+                    i++;
+                }
+                int keyword = keyword(start, i);
+                if (keyword >= 0) {
+                    return symbol(keyword, i, null);
+                }
+                return symbol(ID, i, intern(start, i));
+            }
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\f':
+                case '\r':
+                case '\n':
+                    pos = start + 1;
+                    continue;
+                case '0':
+                    return symbol(NUMBER, start + 1, intern(start, start + 1));
+                case '1':
+                case '2':
+                case '3':
+                case '4':
+                case '5':
+                case '6':
+                case '7':
+                case '8':
+                case '9': {
+                    int i = start + 1;
+                    while (i < end && input[i] >= '0' && input[i] <= '9') {
+                        i++;
+                    }
+                    return symbol(NUMBER, i, intern(start, i));
+                }
+                case '/': {
+                    int comment = commentEnd(start);
+                    if (comment >= 0) {
+                        pos = comment;
+                        continue;
+                    }
+                    return symbol(DIV, start + 1, null);
+                }
+                case '{':
+                    return symbol(LBRACE, start + 1, null);
+                case '}':
+                    return symbol(RBRACE, start + 1, null);
+                case '[': {
+                    int brackets = emptyBracketsEnd(start);
+                    if (brackets >= 0) {
+                        return symbol(LRBRACKET, brackets, null);
+                    }
+                    return symbol(LBRACKET, start + 1, null);
+                }
+                case ']':
+                    return symbol(RBRACKET, start + 1, null);
+                case '(':
+                    return symbol(LPAREN, start + 1, null);
+                case ')':
+                    return symbol(RPAREN, start + 1, null);
+                case '.':
+                    return symbol(DOT, start + 1, null);
+                case ';':
+                    return symbol(SEMI, start + 1, null);
+                case ',':
+                    return symbol(COMMA, start + 1, null);
+                case '=':
+                    if (start + 1 < end && input[start + 1] == '=') {
+                        return symbol(EQUALS, start + 2, null);
+                    }
+                    return symbol(EQ, start + 1, null);
+                case '!':
+                    return symbol(NEG, start + 1, null);
+                case '&':
+                    if (start + 1 < end && input[start + 1] == '&') {
+                        return symbol(AND, start + 2, null);
+                    }
+                    break;
+                case '+':
+                    return symbol(PLUS, start + 1, null);
+                case '-':
+                    return symbol(MINUS, start + 1, null);
+                case '*':
+                    return symbol(TIMES, start + 1, null);
+                case '<':
+                    return symbol(LESS, start + 1, null);
+                default:
+                    break;
+            }
+            // a single code point which is not part of any token
+            int invalidEnd = start + 1;
+            if (Character.isHighSurrogate(c) && invalidEnd < end
+                    && Character.isLowSurrogate(input[invalidEnd])) {
+                invalidEnd++;
+            }
+            return symbol(INVALID_TOKEN, invalidEnd,
+                    new String(input, start, invalidEnd - start));
+        }
+        return symbol(EOF, end, null);
+    }
+}
@@ -0,0 +1,520 @@
+package frontend;
+
+import static notquitejava.ast.NQJ.*;
+import static notquitejava.syntax.NotQuiteJavaParserSym.*;
+
+import java.util.List;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+import notquitejava.ast.*;
+
+/**
+ * Hand-written recursive descent parser producing the same trees as the generated
+ * {@link notquitejava.syntax.NotQuiteJavaParser}, including the source spans set by
+ * the symbol factory of {@link NQJFrontend}. Binary operators are parsed by precedence
+ * climbing with the precedences declared in the grammar.
+ *
+ * <p>The parser does not report or recover from syntax errors. It stops at the first
+ * unexpected token and returns null, the caller then parses the input again with the
+ * generated parser to get the same errors and the same recovery.
+ *
+ * <p>Spans follow the generated parser: an element spans the tokens of the outermost
+ * grammar rule returning it, so a parenthesized expression includes the parentheses and
+ * a local variable declaration includes the semicolon. An empty parameter or argument
+ * list spans the opening parenthesis, and the program extends to the end of the input.
+ */
+public class FastParser {
+
+    /**
+     * Thrown at the first syntax error, without a stack trace.
+     */
+    private static class Bailout extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Bailout() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Bailout BAILOUT = new Bailout();
+
+    private final Scanner scanner;
+    private Symbol token;
+    // offsets of the last consumed token
+    private int lastStart;
+    private int lastEnd;
+
+    public FastParser(Scanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Parses a program, or returns null if the input has a syntax error.
+     */
+    public NQJProgram parse() throws Exception {
+        token = scanner.next_token();
+        try {
+            NQJTopLevelDeclList decls = topLevelDecls();
+            NQJProgram program = AstHelper.program(decls);
+            setProgramSpan(program, decls, token.right);
+            return program;
+        } catch (Bailout e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a sequence of top level declarations, or returns null if the input has a syntax
+     * error. Used to parse parts of a program.
+     */
+    public NQJTopLevelDeclList parseTopLevelDecls() throws Exception {
+        token = scanner.next_token();
+        try {
+            return topLevelDecls();
+        } catch (Bailout e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sets the span of a program like the start rule of the generated parser does:
+     * from the first declaration to the end of the input. An empty program has no span.
+     */
+    static void setProgramSpan(NQJProgram program, List<? extends NQJElement> decls, int end) {
+        if (!decls.isEmpty()) {
+            program.setSourceSpan(SourceText.span(start(decls.get(0)), end));
+        }
+    }
+
+    private void next() throws Exception {
+        lastStart = token.left;
+        lastEnd = token.right;
+        token = scanner.next_token();
+    }
+
+    private void accept(int sym) throws Exception {
+        if (token.sym != sym) {
+            throw BAILOUT;
+        }
+        next();
+    }
+
+    private String identifier() throws Exception {
+        if (token.sym != ID) {
+            throw BAILOUT;
+        }
+        String name = (String) token.value;
+        next();
+        return name;
+    }
+
+    /**
+     * Sets the span from start to the end of the last consumed token.
+     */
+    private <T extends NQJElement> T span(T e, int start) {
+        e.setSourceSpan(SourceText.span(start, lastEnd));
+        return e;
+    }
+
+    private static int start(NQJElement e) {
+        return SourceText.start(e.getSourceSpan());
+    }
+
+    private NQJTopLevelDeclList topLevelDecls() throws Exception {
+        NQJTopLevelDeclList decls = TopLevelDeclList();
+        while (token.sym != EOF) {
+            if (token.sym == CLASS) {
+                decls.add(classDecl());
+            } else {
+                NQJType type = type();
+                decls.add(functionDecl(type, identifier()));
+            }
+        }
+        return decls;
+    }
+
+    private NQJClassDecl classDecl() throws Exception {
+        int start = token.left;
+        accept(CLASS);
+        String name = identifier();
+        String ext = null;
+        if (token.sym == EXTENDS) {
+            next();
+            ext = identifier();
+        }
+        accept(LBRACE);
+        NQJMemberDeclList members = MemberDeclList();
+        while (token.sym != RBRACE) {
+            NQJType type = type();
+            String memberName = identifier();
+            if (token.sym == LPAREN) {
+                members.add(functionDecl(type, memberName));
+            } else {
+                members.add(span(VarDecl(type, memberName), start(type)));
+                accept(SEMI);
+            }
+        }
+        next();
+        return span(AstHelper.classDecl(name, ext, members), start);
+    }
+
+    private NQJFunctionDecl functionDecl(NQJType returnType, String name) throws Exception {
+        accept(LPAREN);
+        NQJVarDeclList params = VarDeclList();
+        if (token.sym == RPAREN) {
+            span(params, lastStart);
+        } else {
+            int start = token.left;
+            params.add(varDecl());
+            while (token.sym == COMMA) {
+                next();
+                params.add(varDecl());
+            }
+            span(params, start);
+        }
+        accept(RPAREN);
+        NQJBlock body = block();
+        return span(FunctionDecl(returnType, name, params, body), start(returnType));
+    }
+
+    private NQJVarDecl varDecl() throws Exception {
+        NQJType type = type();
+        return span(VarDecl(type, identifier()), start(type));
+    }
+
+    private NQJType type() throws Exception {
+        int start = token.left;
+        NQJType base = baseType();
+        if (base != null) {
+            return span(AstHelper.buildArrayType(base, brackets()), start);
+        }
+        NQJElement e = chain(false);
+        if (!(e instanceof NQJExprL)) {
+            throw BAILOUT;
+        }
+        return span(AstHelper.buildArrayType((NQJExprL) e, brackets()), start);
+    }
+
+    /**
+     * Parses boolean or int, returns null for other tokens.
+     */
+    private NQJType baseType() throws Exception {
+        int start = token.left;
+        if (token.sym == BOOLEAN) {
+            next();
+            return span(TypeBool(), start);
+        } else if (token.sym == INT) {
+            next();
+            return span(TypeInt(), start);
+        }
+        return null;
+    }
+
+    private int brackets() throws Exception {
+        int count = 0;
+        while (token.sym == LRBRACKET) {
+            next();
+            count++;
+        }
+        return count;
+    }
+
+    private NQJBlock block() throws Exception {
+        int start = token.left;
+        accept(LBRACE);
+        NQJBlock block = Block();
+        while (token.sym != RBRACE) {
+            block.add(statement(true));
+        }
+        next();
+        return span(block, start);
+    }
+
+    /**
+     * Parses a statement, which may be a local variable declaration when allowed.
+     */
+    private NQJStatement statement(boolean allowVarDecl) throws Exception {
+        int start = token.left;
+        switch (token.sym) {
+            case LBRACE:
+                return block();
+            case IF: {
+                next();
+                accept(LPAREN);
+                NQJExpr condition = expr();
+                accept(RPAREN);
+                NQJStatement ifTrue = statement(false);
+                accept(ELSE);
+                NQJStatement ifFalse = statement(false);
+                return span(StmtIf(condition, ifTrue, ifFalse), start);
+            }
+            case WHILE: {
+                next();
+                accept(LPAREN);
+                NQJExpr condition = expr();
+                accept(RPAREN);
+                NQJStatement body = statement(false);
+                return span(StmtWhile(condition, body), start);
+            }
+            case RETURN: {
+                next();
+                NQJExpr result = expr();
+                accept(SEMI);
+                return span(StmtReturn(result), start);
+            }
+            case BOOLEAN:
+            case INT: {
+                if (!allowVarDecl) {
+                    throw BAILOUT;
+                }
+                NQJVarDecl v = varDecl();
+                accept(SEMI);
+                return span(v, start);
+            }
+            case NEG:
+            case MINUS: {
+                NQJExpr e = expr();
+                accept(SEMI);
+                return span(StmtExpr(e), start);
+            }
+            default:
+                break;
+        }
+        // an expression, an assignment or a declaration with a class type
+        NQJElement e = chain(true);
+        if (e instanceof NQJExprL) {
+            NQJExprL address = (NQJExprL) e;
+            if (allowVarDecl && (token.sym == LRBRACKET || token.sym == ID)) {
+                NQJType type = span(AstHelper.buildArrayType(address, brackets()), start);
+                NQJVarDecl v = span(VarDecl(type, identifier()), start);
+                accept(SEMI);
+                return span(v, start);
+            }
+            if (token.sym == EQ) {
+                next();
+                NQJExpr value = expr();
+                accept(SEMI);
+                return span(StmtAssign(address, value), start);
+            }
+        }
+        NQJExpr expr = binary(read(e), 1);
+        accept(SEMI);
+        return span(StmtExpr(expr), start);
+    }
+
+    private NQJExpr expr() throws Exception {
+        return binary(unary(), 1);
+    }
+
+    /**
+     * Precedence of a binary operator, 0 for other tokens.
+     */
+    private static int precedence(int sym) {
+        switch (sym) {
+            case AND:
+                return 1;
+            case EQUALS:
+                return 2;
+            case LESS:
+                return 3;
+            case PLUS:
+            case MINUS:
+                return 4;
+            case TIMES:
+            case DIV:
+                return 5;
+            default:
+                return 0;
+        }
+    }
+
+    private static NQJOperator operator(int sym) {
+        switch (sym) {
+            case AND:
+                return And();
+            case EQUALS:
+                return Equals();
+            case LESS:
+                return Less();
+            case PLUS:
+                return Plus();
+            case MINUS:
+                return Minus();
+            case TIMES:
+                return Times();
+            default:
+                return Div();
+        }
+    }
+
+    /**
+     * Parses the operators binding at least as strong as minPrecedence after left.
+     * All binary operators are left associative.
+     */
+    private NQJExpr binary(NQJExpr left, int minPrecedence) throws Exception {
+        int precedence;
+        while ((precedence = precedence(token.sym)) >= minPrecedence) {
+            int sym = token.sym;
+            next();
+            NQJExpr right = unary();
+            while (precedence(token.sym) > precedence) {
+                right = binary(right, precedence + 1);
+            }
+            left = span(ExprBinary(left, operator(sym), right), start(left));
+        }
+        return left;
+    }
+
+    /**
+     * Parses an expression without binary operators, unary operators bind strongest.
+     */
+    private NQJExpr unary() throws Exception {
+        int start = token.left;
+        if (token.sym == NEG) {
+            next();
+            return span(ExprUnary(Negate(), unary()), start);
+        } else if (token.sym == MINUS) {
+            next();
+            return span(ExprUnary(UnaryMinus(), unary()), start);
+        }
+        return read(chain(true));
+    }
+
+    /**
+     * Reads the value of an address, other expressions are returned unchanged.
+     */
+    private static NQJExpr read(NQJElement e) {
+        if (e instanceof NQJExprL) {
+            NQJRead read = Read((NQJExprL) e);
+            read.setSourceSpan(e.getSourceSpan());
+            return read;
+        }
+        return (NQJExpr) e;
+    }
+
+    /**
+     * Parses a primary expression followed by field accesses, method calls, array lengths
+     * and array lookups. Returns the last address unread, so that the caller can use it
+     * as the target of an assignment or as a type. A function call has no suffixes and is
+     * only allowed where an expression is expected.
+     */
+    private NQJElement chain(boolean allowCall) throws Exception {
+        int start = token.left;
+        NQJElement e;
+        // new arrays cannot be indexed without parentheses
+        boolean allowLookup = true;
+        switch (token.sym) {
+            case ID: {
+                String name = identifier();
+                if (allowCall && token.sym == LPAREN) {
+                    NQJExprList args = arguments();
+                    return span(FunctionCall(name, args), start);
+                }
+                e = span(VarUse(name), start);
+                break;
+            }
+            case NEW: {
+                next();
+                NQJType base = baseType();
+                if (base == null) {
+                    String name = identifier();
+                    if (token.sym == LPAREN) {
+                        next();
+                        accept(RPAREN);
+                        e = span(NewObject(name), start);
+                        break;
+                    }
+                    base = TypeClass(name);
+                }
+                accept(LBRACKET);
+                NQJExpr size = expr();
+                accept(RBRACKET);
+                e = span(AstHelper.newArray(base, size, brackets()), start);
+                allowLookup = false;
+                break;
+            }
+            case TRUE:
+                next();
+                e = span(BoolConst(true), start);
+                break;
+            case FALSE:
+                next();
+                e = span(BoolConst(false), start);
+                break;
+            case NUMBER: {
+                int value;
+                try {
+                    value = Integer.parseInt((String) token.value);
+                } catch (NumberFormatException ex) {
+                    // the generated parser fails on it, possibly after reporting other errors
+                    throw BAILOUT;
+                }
+                next();
+                e = span(Number(value), start);
+                break;
+            }
+            case THIS:
+                next();
+                e = span(ExprThis(), start);
+                break;
+            case NULL:
+                next();
+                e = span(ExprNull(), start);
+                break;
+            case LPAREN: {
+                next();
+                NQJExpr inner = expr();
+                accept(RPAREN);
+                e = span(inner, start);
+                break;
+            }
+            default:
+                throw BAILOUT;
+        }
+        while (true) {
+            if (token.sym == DOT) {
+                next();
+                NQJExpr receiver = read(e);
+                if (token.sym == LENGTH) {
+                    next();
+                    e = span(ArrayLength(receiver), start);
+                } else {
+                    String name = identifier();
+                    if (token.sym == LPAREN) {
+                        NQJExprList args = arguments();
+                        e = span(MethodCall(receiver, name, args), start);
+                    } else {
+                        e = span(FieldAccess(receiver, name), start);
+                    }
+                }
+            } else if (token.sym == LBRACKET && allowLookup) {
+                next();
+                NQJExpr array = read(e);
+                NQJExpr index = expr();
+                accept(RBRACKET);
+                e = span(ArrayLookup(array, index), start);
+            } else {
+                return e;
+            }
+            allowLookup = true;
+        }
+    }
+
+    private NQJExprList arguments() throws Exception {
+        accept(LPAREN);
+        NQJExprList args = ExprList();
+        if (token.sym == RPAREN) {
+            span(args, lastStart);
+        } else {
+            int start = token.left;
+            args.add(expr());
+            while (token.sym == COMMA) {
+                next();
+                args.add(expr());
+            }
+            span(args, start);
+        }
+        accept(RPAREN);
+        return args;
+    }
+}
@@ -0,0 +1,135 @@
+package frontend;
+
+import java.util.ArrayList;
+import java.util.List;
+import notquitejava.ast.*;
+
+/**
+ * Updates a parsed program after an edit of its text.
+ *
+ * <p>The top level declarations touched by the edit are parsed again, together with the
+ * white space and comments around them. The region starts after the closing brace of the
+ * previous declaration and ends before the first token of the next declaration, so it can be
+ * lexed on its own. All other declarations are kept and the spans of the declarations after
+ * the edit are shifted.
+ */
+class IncrementalParser {
+
+    private IncrementalParser() {
+    }
+
+    /**
+     * Updates the program in place to the edited text.
+     * Returns false if the edited region could not be parsed on its own, the program is
+     * unchanged in that case.
+     */
+    static boolean reparse(NQJProgram program, SourceText text, TextEdit edit)
+            throws Exception {
+        List<NQJTopLevelDecl> decls = topLevelDecls(program);
+        int editStart = edit.getOffset();
+        int editEnd = editStart + edit.getLength();
+        int delta = edit.getDelta();
+        // declarations touching the edit, a token next to the edit may change
+        int first = 0;
+        while (first < decls.size() && end(decls.get(first)) < editStart) {
+            first++;
+        }
+        int last = first;
+        while (last < decls.size() && start(decls.get(last)) <= editEnd) {
+            last++;
+        }
+        int regionStart = first > 0 ? end(decls.get(first - 1)) : 0;
+        int regionEnd = last < decls.size() ? start(decls.get(last)) + delta : text.getLength();
+
+        char[] chars = text.getChars();
+        NQJTopLevelDeclList parsed =
+                new FastParser(new FastLexer(chars, regionStart, regionEnd)).parseTopLevelDecls();
+        if (parsed == null) {
+            return false;
+        }
+        if (last < decls.size()) {
+            // a line comment at the end of the region would hide the next declaration
+            int gapStart = parsed.isEmpty() ? regionStart : end(parsed.get(parsed.size() - 1));
+            if (new FastLexer(chars, gapStart, text.getLength()).next_token().left != regionEnd) {
+                return false;
+            }
+        }
+
+        int classIndex = 0;
+        int functionIndex = 0;
+        for (NQJTopLevelDecl decl : decls.subList(0, first)) {
+            if (decl instanceof NQJClassDecl) {
+                classIndex++;
+            } else {
+                functionIndex++;
+            }
+        }
+        for (NQJTopLevelDecl decl : decls.subList(first, last)) {
+            if (decl instanceof NQJClassDecl) {
+                program.getClassDecls().remove(classIndex);
+            } else {
+                program.getFunctionDecls().remove(functionIndex);
+            }
+        }
+        for (NQJTopLevelDecl decl : AstHelper.copyTopLevelDecls(parsed)) {
+            if (decl instanceof NQJClassDecl) {
+                program.getClassDecls().add(classIndex++, (NQJClassDecl) decl);
+            } else {
+                program.getFunctionDecls().add(functionIndex++, (NQJFunctionDecl) decl);
+            }
+        }
+        if (delta != 0) {
+            for (NQJTopLevelDecl decl : decls.subList(last, decls.size())) {
+                shiftSpans(decl, delta);
+            }
+        }
+
+        List<NQJTopLevelDecl> updated = topLevelDecls(program);
+        program.setSourceSpan(SourceText.NO_SPAN);
+        FastParser.setProgramSpan(program, updated, text.getLength());
+        program.setSourceText(text);
+        return true;
+    }
+
+    /**
+     * The top level declarations of a program in source order.
+     */
+    static List<NQJTopLevelDecl> topLevelDecls(NQJProgram program) {
+        NQJClassDeclList classes = program.getClassDecls();
+        NQJFunctionDeclList functions = program.getFunctionDecls();
+        List<NQJTopLevelDecl> decls = new ArrayList<>(classes.size() + functions.size());
+        int c = 0;
+        int f = 0;
+        while (c < classes.size() || f < functions.size()) {
+            if (f == functions.size()
+                    || c < classes.size() && start(classes.get(c)) < start(functions.get(f))) {
+                decls.add(classes.get(c++));
+            } else {
+                decls.add(functions.get(f++));
+            }
+        }
+        return decls;
+    }
+
+    private static void shiftSpans(NQJElement e, int delta) {
+        long span = e.getSourceSpan();
+        if (span != SourceText.NO_SPAN) {
+            e.setSourceSpan(SourceText.span(SourceText.start(span) + delta,
+                    SourceText.end(span) + delta));
+        }
+        for (int i = 0; i < e.size(); i++) {
+            NQJElement child = e.get(i);
+            if (child != null) {
+                shiftSpans(child, delta);
+            }
+        }
+    }
+
+    private static int start(NQJElement e) {
+        return SourceText.start(e.getSourceSpan());
+    }
+
+    private static int end(NQJElement e) {
+        return SourceText.end(e.getSourceSpan());
+    }
+}
@@ -1,6 +1,6 @@
 package frontend;
 
-import java.io.FileReader;
+import java.io.File;
 import java.io.StringReader;
 import java.util.Scanner;
 import notquitejava.ast.NQJProgram;
@@ -20,13 +20,11 @@ public class Main {
             System.out.println("Enter a filename: ");
             fileName = new Scanner(System.in).nextLine();
         }
-        try (FileReader r = new FileReader(fileName)) {
-            NQJFrontend frontend = new NQJFrontend();
-            NQJProgram prog = frontend.parse(r);
-            System.out.println(prog);
+        NQJFrontend frontend = new NQJFrontend();
+        NQJProgram prog = frontend.parseFile(new File(fileName));
+        System.out.println(prog);
 
-            frontend.getSyntaxErrors().forEach(System.out::println);
-        }
+        frontend.getSyntaxErrors().forEach(System.out::println);
 
     }
 
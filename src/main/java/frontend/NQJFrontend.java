@@ -1,15 +1,20 @@
 package frontend;
 
+import java.io.CharArrayReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
-import java_cup.runtime.ComplexSymbolFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java_cup.runtime.Scanner;
 import java_cup.runtime.Symbol;
+import java_cup.runtime.SymbolFactory;
 import notquitejava.ast.NQJElement;
 import notquitejava.ast.NQJProgram;
+import notquitejava.ast.NQJTopLevelDecl;
+import notquitejava.ast.NQJTopLevelDeclList;
 import notquitejava.syntax.Lexer;
 import notquitejava.syntax.NotQuiteJavaParser;
 
@@ -24,32 +29,186 @@ public class NQJFrontend {
      */
     private final List<SyntaxError> syntaxErrors = new ArrayList<>();
 
+    /**
+     * Whether to use the {@link FastLexer} instead of the lexer generated by JFlex.
+     */
+    private boolean useFastLexer;
+
+    /**
+     * Selects the hand-written {@link FastLexer} instead of the lexer generated by JFlex.
+     * Both produce the same tokens.
+     */
+    public void setUseFastLexer(boolean useFastLexer) {
+        this.useFastLexer = useFastLexer;
+    }
+
+    /**
+     * Whether to try the {@link FastParser} before the parser generated by CUP.
+     */
+    private boolean useFastParser;
+
+    /**
+     * Selects the hand-written {@link FastParser} instead of the parser generated by CUP.
+     * Both produce the same trees for valid inputs.
+     *
+     * <p>The fast parser does not report or recover from syntax errors. If it fails, the
+     * whole input is silently parsed again by the generated parser, so inputs with syntax
+     * errors are parsed twice and get the errors and the tree of the generated parser.
+     * Parallel parsing and incremental reparsing require both the fast parser and the fast
+     * lexer.
+     */
+    public void setUseFastParser(boolean useFastParser) {
+        this.useFastParser = useFastParser;
+    }
+
+    /**
+     * Inputs shorter than this are always parsed on the calling thread.
+     */
+    static final int PARALLEL_MIN_LENGTH = 1 << 16;
+
+    /**
+     * The number of threads used to parse large inputs.
+     */
+    private int parseThreads = 1;
+
+    /**
+     * Sets the number of threads used to parse large inputs with the {@link FastParser}.
+     * Only used with the fast parser and lexer. The input is split into chunks of top level
+     * declarations, which are parsed concurrently.
+     */
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
+    /**
+     * The stack size in bytes of the threads parsing in parallel.
+     */
+    private long stackSize = CompilerThread.DEFAULT_STACK_SIZE;
+
+    /**
+     * Sets the stack size in bytes of the threads parsing in parallel.
+     * The parsers recurse once per nesting level, like on the calling compiler thread.
+     */
+    public void setStackSize(long stackSize) {
+        this.stackSize = stackSize;
+    }
+
     /**
      * Parses a NotQuiteJava program from a Reader.
      */
     public NQJProgram parse(Reader in) throws Exception {
-        ComplexSymbolFactory sf = new NQJSymbolFactory();
-        Lexer lexer = new Lexer(sf, in);
-        NotQuiteJavaParser parser = new NotQuiteJavaParser(lexer, sf);
+        return parse(SourceText.read("unknown", in));
+    }
+
+    /**
+     * Parses a NotQuiteJava program from a source text.
+     * The positions of the AST elements refer to this text.
+     */
+    public NQJProgram parse(SourceText text) throws Exception {
+        if (useFastParser) {
+            NQJProgram program = null;
+            if (parseThreads > 1 && useFastLexer
+                    && text.getLength() >= PARALLEL_MIN_LENGTH) {
+                program = parseParallel(text);
+            }
+            if (program == null) {
+                program = new FastParser(lexer(text)).parse();
+            }
+            if (program != null) {
+                program.setSourceText(text);
+                return program;
+            }
+        }
+        SymbolFactory sf = new NQJSymbolFactory();
+        NotQuiteJavaParser parser = new NotQuiteJavaParser(lexer(text), sf);
 
         parser.onError(syntaxErrors::add);
+        parser.setSourceText(text);
 
         Symbol result = parser.parse();
         if (result != null && result.value instanceof NQJProgram) {
-            return (NQJProgram) result.value;
+            NQJProgram program = (NQJProgram) result.value;
+            program.setSourceText(text);
+            return program;
         }
         return null;
     }
 
     /**
-     * Parses a NotQuiteJava program from a file.
+     * Parses a program again after an edit of its text. Only the top level declarations
+     * touched by the edit are parsed again. The other declarations of the previous program are
+     * reused and the spans of the declarations after the edit are shifted to the new text.
+     * The previous program is updated in place and returned in that case.
+     *
+     * <p>If the edited declarations cannot be parsed on their own, or the fast parser and lexer
+     * are not selected, the whole edited text is parsed like by {@link #parse(SourceText)} and
+     * a new program is returned.
      */
-    public NQJProgram parseFile(File file) throws Exception {
-        try (FileReader reader = new FileReader(file)) {
-            return parse(reader);
+    public NQJProgram reparse(NQJProgram previous, TextEdit edit) throws Exception {
+        if (previous.getSourceText() == null) {
+            throw new IllegalArgumentException("The previous program has no source text");
+        }
+        SourceText text = edit.apply(previous.getSourceText());
+        if (useFastParser && useFastLexer
+                && IncrementalParser.reparse(previous, text, edit)) {
+            return previous;
+        }
+        return parse(text);
+    }
+
+    /**
+     * Parses chunks of top level declarations concurrently and merges them in source order.
+     * The chunks are lexed in place, so all positions refer to the whole text.
+     * Returns null if the input could not be split or a chunk has a syntax error.
+     */
+    private NQJProgram parseParallel(SourceText text) throws Exception {
+        char[] chars = text.getChars();
+        int[] bounds = TopLevelSplitter.split(chars, text.getLength(), parseThreads * 4);
+        if (bounds.length <= 2) {
+            return null;
+        }
+        ExecutorService pool = CompilerThread.newPool(parseThreads, stackSize);
+        try {
+            List<Future<List<NQJTopLevelDecl>>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                int start = bounds[i];
+                int end = bounds[i + 1];
+                tasks.add(pool.submit(() -> {
+                    NQJTopLevelDeclList decls =
+                            new FastParser(new FastLexer(chars, start, end)).parseTopLevelDecls();
+                    // copy in the worker, so that the copies can be added to the program
+                    return decls == null ? null : AstHelper.copyTopLevelDecls(decls);
+                }));
+            }
+            List<NQJTopLevelDecl> decls = new ArrayList<>();
+            for (Future<List<NQJTopLevelDecl>> task : tasks) {
+                List<NQJTopLevelDecl> chunk = CompilerThread.join(task);
+                if (chunk == null) {
+                    return null;
+                }
+                decls.addAll(chunk);
+            }
+            NQJProgram program = AstHelper.programOfCopies(decls);
+            FastParser.setProgramSpan(program, decls, text.getLength());
+            return program;
+        } finally {
+            pool.shutdown();
         }
     }
 
+    private Scanner lexer(SourceText text) {
+        return useFastLexer
+                ? new FastLexer(text.getChars(), text.getLength())
+                : new Lexer(new CharArrayReader(text.getChars(), 0, text.getLength()));
+    }
+
+    /**
+     * Parses a NotQuiteJava program from a UTF-8 encoded file.
+     */
+    public NQJProgram parseFile(File file) throws Exception {
+        return parse(SourceText.readFile(file.toPath()));
+    }
+
     /**
      * Parses a NotQuiteJava program from the given input string.
      */
@@ -66,49 +225,47 @@ public class NQJFrontend {
     }
 
     /**
-     * A symbol factory, which sets the source position of NQJElements created by the parser.
+     * A symbol factory, which sets the source span of NQJElements created by the parser.
+     * Symbols carry the start and end offset of their text in left and right.
      */
-    static class NQJSymbolFactory extends ComplexSymbolFactory {
+    static class NQJSymbolFactory implements SymbolFactory {
 
         @Override
-        public Symbol newSymbol(String name, int id, Location left, Location right, Object value) {
-            if (value instanceof NQJElement) {
-                NQJElement e = (NQJElement) value;
-                e.setSourcePosition(new SourcePosition(left.getUnit(),
-                        left.getLine(), left.getColumn(),
-                        right.getLine(), right.getColumn()));
+        public Symbol newSymbol(String name, int id, Symbol left, Symbol right, Object value) {
+            if (value instanceof NQJElement && left.left >= 0) {
+                ((NQJElement) value).setSourceSpan(SourceText.span(left.left, right.right));
             }
-            return super.newSymbol(name, id, left, right, value);
+            return new Symbol(id, left.left, right.right, value);
         }
 
         @Override
-        public Symbol newSymbol(String name, int id, Symbol l, Symbol r, Object value) {
-            if (value instanceof NQJElement) {
-                NQJElement e = (NQJElement) value;
-                ComplexSymbol leftS = (ComplexSymbol) l;
-                ComplexSymbol rightS = (ComplexSymbol) r;
-                Location left = leftS.getLeft();
-                Location right = rightS.getRight();
-                e.setSourcePosition(new SourcePosition(left.getUnit(),
-                        left.getLine(), left.getColumn(),
-                        right.getLine(), right.getColumn()));
-            }
-            return super.newSymbol(name, id, l, r, value);
+        public Symbol newSymbol(String name, int id, Symbol left, Symbol right) {
+            return new Symbol(id, left.left, right.right);
         }
 
         @Override
-        public Symbol newSymbol(String name, int id, Symbol l, Object value) {
-            if (value instanceof NQJElement) {
-                NQJElement e = (NQJElement) value;
-                ComplexSymbol leftS = (ComplexSymbol) l;
-                Location left = leftS.getLeft();
-                Location right = leftS.getRight();
-                e.setSourcePosition(new SourcePosition(left.getUnit(),
-                        left.getLine(), left.getColumn(),
-                        right.getLine(), right.getColumn()));
+        public Symbol newSymbol(String name, int id, Symbol left, Object value) {
+            if (value instanceof NQJElement && left.left >= 0) {
+                ((NQJElement) value).setSourceSpan(SourceText.span(left.left, left.right));
             }
-            return super.newSymbol(name, id, l, value);
+            return new Symbol(id, left.right, left.right, value);
         }
 
+        @Override
+        public Symbol newSymbol(String name, int id, Object value) {
+            return new Symbol(id, value);
+        }
+
+        @Override
+        public Symbol newSymbol(String name, int id) {
+            return new Symbol(id);
+        }
+
+        @Override
+        public Symbol startSymbol(String name, int id, int state) {
+            Symbol symbol = new Symbol(id);
+            symbol.parse_state = state;
+            return symbol;
+        }
     }
 }
@@ -0,0 +1,304 @@
+package frontend;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import notquitejava.ast.NQJElement;
+import notquitejava.ast.NQJProgram;
+
+/**
+ * The text of a source file.
+ *
+ * <p>AST elements only store a span of offsets into the text, packed into a long.
+ * Lines and columns are computed from a table of line starts, which is only built
+ * when the first position is needed, usually to report an error.
+ * Lines are counted like in the generated JFlex lexer, so "\r\n" is one line break.
+ */
+public class SourceText {
+
+    /**
+     * Span of elements without a position.
+     */
+    public static final long NO_SPAN = 0;
+
+    /**
+     * Files of at least this size are memory-mapped instead of read into the heap.
+     */
+    private static final long MAP_MIN_SIZE = 1 << 20;
+
+    private final String unit;
+    private final char[] text;
+    private final int length;
+    private int[] lineStarts;
+
+    /**
+     * Creates a source text of the first length chars of the array.
+     */
+    public SourceText(String unit, char[] text, int length) {
+        this.unit = unit;
+        this.text = text;
+        this.length = length;
+    }
+
+    public SourceText(String unit, String text) {
+        this(unit, text.toCharArray(), text.length());
+    }
+
+    /**
+     * Reads the remaining input of the reader.
+     */
+    public static SourceText read(String unit, Reader in) throws IOException {
+        char[] chars = new char[1 << 14];
+        int length = 0;
+        while (true) {
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+            int read = in.read(chars, length, chars.length - length);
+            if (read < 0) {
+                return new SourceText(unit, chars, length);
+            }
+            length += read;
+        }
+    }
+
+    /**
+     * Reads a UTF-8 encoded file. Small files are read in one operation, large files are
+     * memory-mapped, and the bytes are decoded directly into the chars of the text.
+     */
+    public static SourceText readFile(Path file) throws IOException {
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            }
+            if (size >= MAP_MIN_SIZE) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                    // read until the buffer is full or the file ends
+                }
+                bytes.flip();
+            }
+        }
+        return decode(file.toString(), bytes);
+    }
+
+    /**
+     * Decodes UTF-8 bytes. A leading byte order mark is skipped and malformed input is
+     * replaced, like by a Reader. ASCII bytes are copied without the charset decoder,
+     * which only decodes the bytes after the first non-ASCII byte.
+     */
+    public static SourceText decode(String unit, ByteBuffer bytes) {
+        int start = bytes.position();
+        int end = bytes.limit();
+        if (end - start >= 3 && bytes.get(start) == (byte) 0xEF
+                && bytes.get(start + 1) == (byte) 0xBB && bytes.get(start + 2) == (byte) 0xBF) {
+            start += 3;
+        }
+        // UTF-8 never decodes to more chars than bytes
+        char[] chars = new char[end - start];
+        int i = start;
+        while (i < end) {
+            byte b = bytes.get(i);
+            if (b < 0) {
+                break;
+            }
+            chars[i - start] = (char) b;
+            i++;
+        }
+        int length = i - start;
+        if (i < end) {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer out = CharBuffer.wrap(chars, length, chars.length - length);
+            decoder.decode(bytes.duplicate().position(i), out, true);
+            decoder.flush(out);
+            length = out.position();
+        }
+        return new SourceText(unit, chars, length);
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * The characters of the text, the array may be longer than the text.
+     */
+    public char[] getChars() {
+        return text;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Packs the offsets [start, end) into a span, which is never {@link #NO_SPAN}.
+     */
+    public static long span(int start, int end) {
+        return ((long) (start + 1) << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    public static int start(long span) {
+        return (int) (span >>> 32) - 1;
+    }
+
+    public static int end(long span) {
+        return (int) span;
+    }
+
+    private int[] lineStarts() {
+        if (lineStarts == null) {
+            int[] starts = new int[64];
+            int count = 1;
+            for (int i = 0; i < length; i++) {
+                switch (text[i]) {
+                    case '\r':
+                        if (i + 1 < length && text[i + 1] == '\n') {
+                            i++;
+                        }
+                        break;
+                    case '\n':
+                    case '\u000B':
+                    case '\u000C':
+                    case '\u0085':
+                    case '\u2028':
+                    case '\u2029':
+                        break;
+                    default:
+                        continue;
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+            lineStarts = Arrays.copyOf(starts, count);
+        }
+        return lineStarts;
+    }
+
+    /**
+     * Returns the index of the line containing the offset, starting at 0.
+     */
+    private int lineIndex(int offset) {
+        int[] starts = lineStarts();
+        int index = Arrays.binarySearch(starts, offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * The line of an offset, starting at 1.
+     */
+    public int line(int offset) {
+        return lineIndex(offset) + 1;
+    }
+
+    /**
+     * The column of an offset, starting at 1.
+     */
+    public int column(int offset) {
+        return offset - lineStarts()[lineIndex(offset)] + 1;
+    }
+
+    /**
+     * The offset of a line and column, both starting at 1. A column after the end of the line
+     * refers to the end of the line, a line after the end of the text to the end of the text.
+     */
+    public int offset(int line, int column) {
+        int[] starts = lineStarts();
+        if (line > starts.length) {
+            return length;
+        }
+        int lineEnd = line < starts.length ? starts[line] : length;
+        int offset = starts[line - 1];
+        while (offset < lineEnd && offset - starts[line - 1] < column - 1
+                && !isLineTerminator(text[offset])) {
+            offset++;
+        }
+        return offset;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        switch (c) {
+            case '\r':
+            case '\n':
+            case '\u000B':
+            case '\u000C':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The text of a span up to the end of its first line, without trailing white space.
+     */
+    public String firstLine(long span) {
+        int start = start(span);
+        int end = Math.min(end(span), length);
+        int lineEnd = start;
+        while (lineEnd < end && !isLineTerminator(text[lineEnd])) {
+            lineEnd++;
+        }
+        while (lineEnd > start && Character.isWhitespace(text[lineEnd - 1])) {
+            lineEnd--;
+        }
+        return new String(text, start, lineEnd - start);
+    }
+
+    /**
+     * Creates the position of a span, or returns null for {@link #NO_SPAN}.
+     */
+    public SourcePosition position(long span) {
+        if (span == NO_SPAN) {
+            return null;
+        }
+        int start = start(span);
+        int end = end(span);
+        return new SourcePosition(unit, line(start), column(start), line(end), column(end));
+    }
+
+    /**
+     * Computes the position of an element from its span and the source text of its program.
+     * Returns null if the element has no span or does not belong to a parsed program.
+     */
+    public static SourcePosition sourcePosition(NQJElement e) {
+        long span = e.getSourceSpan();
+        if (span == NO_SPAN) {
+            return null;
+        }
+        SourceText text = of(e);
+        return text == null ? null : text.position(span);
+    }
+
+    /**
+     * The source text of the program containing the element, if known.
+     */
+    public static SourceText of(NQJElement e) {
+        NQJElement root = e;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        if (root instanceof NQJProgram) {
+            return ((NQJProgram) root).getSourceText();
+        }
+        return null;
+    }
+}
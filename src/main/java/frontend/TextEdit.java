@@ -0,0 +1,63 @@
+package frontend;
+
+/**
+ * An edit of a source text, which replaces length chars at offset by the replacement.
+ */
+public class TextEdit {
+    private final int offset;
+    private final int length;
+    private final String replacement;
+
+    /**
+     * Creates an edit replacing the chars [offset, offset + length).
+     */
+    public TextEdit(int offset, int length, String replacement) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid edit range " + offset + "+" + length);
+        }
+        this.offset = offset;
+        this.length = length;
+        this.replacement = replacement;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getReplacement() {
+        return replacement;
+    }
+
+    /**
+     * The difference between the length of the edited text and the original text.
+     */
+    public int getDelta() {
+        return replacement.length() - length;
+    }
+
+    /**
+     * Returns the edited text. The original text is not changed.
+     */
+    public SourceText apply(SourceText text) {
+        int end = offset + length;
+        if (end > text.getLength()) {
+            throw new IllegalArgumentException("Edit " + offset + "+" + length
+                    + " exceeds text of length " + text.getLength());
+        }
+        char[] chars = new char[text.getLength() + getDelta()];
+        System.arraycopy(text.getChars(), 0, chars, 0, offset);
+        replacement.getChars(0, replacement.length(), chars, offset);
+        System.arraycopy(text.getChars(), end, chars, offset + replacement.length(),
+                text.getLength() - end);
+        return new SourceText(text.getUnit(), chars, chars.length);
+    }
+
+    @Override
+    public String toString() {
+        return offset + "+" + length + "->\"" + replacement + "\"";
+    }
+}
@@ -0,0 +1,82 @@
+package frontend;
+
+import java.util.Arrays;
+
+/**
+ * Splits a source text into chunks of complete top level declarations,
+ * which can be parsed independently of each other.
+ *
+ * <p>The scan does not tokenize the input, it only tracks the nesting of braces and skips
+ * comments like the lexer does. NotQuiteJava has no string or character literals,
+ * so a brace outside of a comment is always a token.
+ */
+public class TopLevelSplitter {
+
+    private TopLevelSplitter() {
+    }
+
+    /**
+     * Splits the first length chars of the text into at most the given number of chunks
+     * of similar size. Returns the chunk boundaries, starting with 0 and ending with length.
+     * A chunk ends after a closing brace at nesting depth 0.
+     *
+     * <p>If the braces are unbalanced or a comment is not terminated, the rest of the input
+     * is one chunk, which then contains the syntax error.
+     */
+    public static int[] split(char[] text, int length, int chunks) {
+        int[] bounds = new int[chunks + 1];
+        int count = 1;
+        long target = (long) length / chunks;
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text[i];
+            if (c == '/' && i + 1 < length) {
+                if (text[i + 1] == '/') {
+                    i += 2;
+                    while (i < length && text[i] != '\n' && text[i] != '\r') {
+                        i++;
+                    }
+                    continue;
+                } else if (text[i + 1] == '*') {
+                    int close = commentEnd(text, i + 2, length);
+                    if (close < 0) {
+                        break;
+                    }
+                    i = close;
+                    continue;
+                }
+            }
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth < 0) {
+                    break;
+                }
+                if (depth == 0 && i + 1 >= target && count < chunks) {
+                    bounds[count++] = i + 1;
+                    target = (long) length * count / chunks;
+                }
+            }
+            i++;
+        }
+        if (bounds[count - 1] < length || count == 1) {
+            bounds[count++] = length;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Returns the offset after the end of the block comment whose content starts at start,
+     * or -1 if it is not terminated.
+     */
+    private static int commentEnd(char[] text, int start, int length) {
+        for (int i = start; i + 1 < length; i++) {
+            if (text[i] == '*' && text[i + 1] == '/') {
+                return i + 2;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,118 @@
+package lsp;
+
+import analysis.IncrementalAnalysis;
+import analysis.TypeError;
+import frontend.NQJFrontend;
+import frontend.SourceText;
+import frontend.SyntaxError;
+import frontend.TextEdit;
+import java.util.Collections;
+import java.util.List;
+import notquitejava.ast.NQJProgram;
+
+/**
+ * An open document of the language server with its parsed and analyzed program.
+ *
+ * <p>Edits are applied with {@link NQJFrontend#reparse}, so only the changed top level
+ * declarations are parsed again. The program is only kept while the text has no syntax
+ * errors, otherwise the next edit parses the whole text. The program is checked with an
+ * {@link IncrementalAnalysis}, which only checks the bodies affected by the edits again.
+ */
+class Document {
+    private final String uri;
+    private SourceText text;
+    private NQJProgram program;
+    private List<SyntaxError> syntaxErrors = Collections.emptyList();
+    private List<TypeError> typeErrors = Collections.emptyList();
+    private final IncrementalAnalysis analysis = new IncrementalAnalysis();
+    private long version;
+
+    Document(String uri, String text, long version) throws Exception {
+        this.uri = uri;
+        this.version = version;
+        this.text = new SourceText(uri, text);
+        NQJFrontend frontend = frontend();
+        update(frontend, frontend.parse(this.text));
+    }
+
+    String getUri() {
+        return uri;
+    }
+
+    SourceText getText() {
+        return text;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    List<SyntaxError> getSyntaxErrors() {
+        return syntaxErrors;
+    }
+
+    List<TypeError> getTypeErrors() {
+        return typeErrors;
+    }
+
+    IncrementalAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * Replaces the whole text.
+     */
+    void setText(String newText) throws Exception {
+        text = new SourceText(uri, newText);
+        NQJFrontend frontend = frontend();
+        update(frontend, frontend.parse(text));
+    }
+
+    /**
+     * Applies an edit and parses the changed declarations.
+     */
+    void edit(TextEdit edit) throws Exception {
+        NQJFrontend frontend = frontend();
+        NQJProgram edited;
+        if (program != null) {
+            edited = frontend.reparse(program, edit);
+            // the generated parser returns no program if it cannot recover from an error
+            text = edited != null ? edited.getSourceText() : edit.apply(text);
+        } else {
+            text = edit.apply(text);
+            edited = frontend.parse(text);
+        }
+        update(frontend, edited);
+    }
+
+    /**
+     * Only the hand-written parser and lexer can parse single declarations again. Texts with
+     * syntax errors are parsed again by the generated parser, which reports the errors.
+     */
+    private static NQJFrontend frontend() {
+        NQJFrontend frontend = new NQJFrontend();
+        frontend.setUseFastParser(true);
+        frontend.setUseFastLexer(true);
+        return frontend;
+    }
+
+    private void update(NQJFrontend frontend, NQJProgram parsed) {
+        syntaxErrors = frontend.getSyntaxErrors();
+        typeErrors = Collections.emptyList();
+        program = syntaxErrors.isEmpty() ? parsed : null;
+    }
+
+    /**
+     * Type checks the program, if it has no syntax errors.
+     */
+    void check() {
+        if (program == null) {
+            return;
+        }
+        typeErrors = analysis.check(program);
+    }
+}
@@ -0,0 +1,287 @@
+package lsp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer for the messages of the language server protocol.
+ *
+ * <p>Objects are read into maps, arrays into lists, integral numbers into Longs and other
+ * numbers into Doubles. The writer accepts maps, iterables, strings, numbers, booleans
+ * and null.
+ */
+public class Json {
+
+    private final String input;
+    private int pos;
+
+    private Json(String input) {
+        this.input = input;
+    }
+
+    /**
+     * Parses a JSON value.
+     *
+     * @throws IllegalArgumentException if the input is not valid JSON
+     */
+    public static Object parse(String input) {
+        Json json = new Json(input);
+        Object value = json.value();
+        json.skipWhiteSpace();
+        if (json.pos < input.length()) {
+            throw json.error("Unexpected trailing characters");
+        }
+        return value;
+    }
+
+    /**
+     * Writes a value as JSON.
+     */
+    public static String write(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(value, sb);
+        return sb.toString();
+    }
+
+    private static void write(Object value, StringBuilder sb) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            writeString((String) value, sb);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                writeString(String.valueOf(entry.getKey()), sb);
+                sb.append(':');
+                write(entry.getValue(), sb);
+            }
+            sb.append('}');
+        } else if (value instanceof Iterable) {
+            sb.append('[');
+            boolean first = true;
+            for (Object element : (Iterable<?>) value) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                write(element, sb);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Cannot write " + value.getClass() + " as JSON");
+        }
+    }
+
+    private static void writeString(String s, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + pos);
+    }
+
+    private void skipWhiteSpace() {
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void expect(char c) {
+        skipWhiteSpace();
+        if (pos >= input.length() || input.charAt(pos) != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private boolean consume(char c) {
+        skipWhiteSpace();
+        if (pos < input.length() && input.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private Object value() {
+        skipWhiteSpace();
+        if (pos >= input.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = input.charAt(pos);
+        switch (c) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                if (c == '-' || c >= '0' && c <= '9') {
+                    return number();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        expect('{');
+        if (consume('}')) {
+            return map;
+        }
+        do {
+            skipWhiteSpace();
+            if (pos >= input.length() || input.charAt(pos) != '"') {
+                throw error("Expected a key");
+            }
+            String key = string();
+            expect(':');
+            map.put(key, value());
+        } while (consume(','));
+        expect('}');
+        return map;
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        expect('[');
+        if (consume(']')) {
+            return list;
+        }
+        do {
+            list.add(value());
+        } while (consume(','));
+        expect(']');
+        return list;
+    }
+
+    private String string() {
+        pos++;
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos >= input.length()) {
+                throw error("Unterminated string");
+            }
+            char c = input.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= input.length()) {
+                throw error("Unterminated string");
+            }
+            char escaped = input.charAt(pos++);
+            switch (escaped) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > input.length()) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(input.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    sb.append(escaped);
+            }
+        }
+    }
+
+    private Object literal(String text, Object value) {
+        if (!input.startsWith(text, pos)) {
+            throw error("Unexpected literal");
+        }
+        pos += text.length();
+        return value;
+    }
+
+    private Number number() {
+        int start = pos;
+        boolean integral = true;
+        if (input.charAt(pos) == '-') {
+            pos++;
+        }
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+            } else if (c < '0' || c > '9') {
+                break;
+            }
+            pos++;
+        }
+        String text = input.substring(start, pos);
+        try {
+            return integral ? (Number) Long.parseLong(text) : (Number) Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + text);
+        }
+    }
+}
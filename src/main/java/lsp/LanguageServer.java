@@ -0,0 +1,451 @@
+package lsp;
+
+import analysis.TypeError;
+import frontend.CompilerThread;
+import frontend.SourcePosition;
+import frontend.SourceText;
+import frontend.SyntaxError;
+import frontend.TextEdit;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Language server for NotQuiteJava, speaking JSON-RPC over stdin and stdout.
+ *
+ * <p>Open documents are kept parsed in memory. Changes are sent incrementally by the client
+ * and only the changed top level declarations are parsed again, see {@link Document}.
+ * After every change the syntax or type errors of the document are published as diagnostics.
+ *
+ * <p>The latency of every request and notification is recorded per method. The custom
+ * request {@code nqj/metrics} returns the latencies, they are also printed to stderr on exit.
+ */
+public class LanguageServer {
+
+    static final int PARSE_ERROR = -32700;
+    static final int INVALID_PARAMS = -32602;
+    static final int METHOD_NOT_FOUND = -32601;
+    static final int INTERNAL_ERROR = -32603;
+
+    /**
+     * Text document sync kind of the protocol: the client sends ranges of changed text.
+     */
+    private static final int SYNC_INCREMENTAL = 2;
+
+    private static final int SEVERITY_ERROR = 1;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final PrintStream log;
+    private final Map<String, Document> documents = new HashMap<>();
+    private final Map<String, Latency> latencies = new TreeMap<>();
+    private boolean logLatency;
+    private boolean verifyIncremental;
+    private boolean shutdownRequested;
+    private boolean exited;
+
+    /**
+     * Latencies of one method.
+     */
+    private static class Latency {
+        long count;
+        long total;
+        long max;
+
+        void record(long nanos) {
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+    }
+
+    /**
+     * An error answered to a request.
+     */
+    static class ResponseError extends RuntimeException {
+        private static final long serialVersionUID = 4735710521829165637L;
+
+        private final int code;
+
+        ResponseError(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    /**
+     * Creates a server reading messages from in and writing messages to out.
+     * Log messages are written to log.
+     */
+    public LanguageServer(InputStream in, OutputStream out, PrintStream log) {
+        this.in = new BufferedInputStream(in);
+        this.out = out;
+        this.log = log;
+    }
+
+    /**
+     * Entry main function.
+     * Arguments: [--log-latency] to print the latency of every message to stderr,
+     * [--verify-incremental] to compare every incremental type check with a full check.
+     */
+    public static void main(String[] args) throws Exception {
+        // stdout belongs to the protocol
+        PrintStream protocol = System.out;
+        System.setOut(System.err);
+        LanguageServer server = new LanguageServer(System.in, protocol, System.err);
+        for (String arg : args) {
+            if (arg.equals("--log-latency")) {
+                server.setLogLatency(true);
+            } else if (arg.equals("--verify-incremental")) {
+                server.setVerifyIncremental(true);
+            } else {
+                System.err.println("Usage: LanguageServer [--log-latency] [--verify-incremental]");
+                System.exit(2);
+            }
+        }
+        // parsing and checking recurse over the nesting of the documents
+        int status = CompilerThread.call(server::serve);
+        System.err.println(server.statistics());
+        System.exit(status);
+    }
+
+    public void setLogLatency(boolean logLatency) {
+        this.logLatency = logLatency;
+    }
+
+    /**
+     * Compares the errors of every incremental type check with a check of the whole document.
+     * A difference fails the handling of the message and is logged.
+     */
+    public void setVerifyIncremental(boolean verifyIncremental) {
+        this.verifyIncremental = verifyIncremental;
+    }
+
+    /**
+     * Handles messages until the client sends exit or closes the input.
+     * Returns the exit code of the server: 0 if shutdown was requested before, 1 otherwise.
+     */
+    public int serve() throws IOException {
+        while (!exited) {
+            String message = readMessage();
+            if (message == null) {
+                break;
+            }
+            handle(message);
+        }
+        return shutdownRequested ? 0 : 1;
+    }
+
+    /**
+     * Reads the next message, or returns null at the end of the input.
+     */
+    private String readMessage() throws IOException {
+        int contentLength = -1;
+        while (true) {
+            String header = readHeaderLine();
+            if (header == null) {
+                return null;
+            }
+            if (header.isEmpty()) {
+                break;
+            }
+            int colon = header.indexOf(':');
+            if (colon > 0 && header.substring(0, colon).trim()
+                    .equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(header.substring(colon + 1).trim());
+            }
+        }
+        if (contentLength < 0) {
+            throw new IOException("Message without Content-Length header");
+        }
+        byte[] content = in.readNBytes(contentLength);
+        if (content.length < contentLength) {
+            return null;
+        }
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    private String readHeaderLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private void send(Map<String, Object> message) throws IOException {
+        message.put("jsonrpc", "2.0");
+        byte[] content = Json.write(message).getBytes(StandardCharsets.UTF_8);
+        out.write(("Content-Length: " + content.length + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.write(content);
+        out.flush();
+    }
+
+    private void handle(String text) throws IOException {
+        long start = System.nanoTime();
+        Object id = null;
+        String method = "invalid";
+        Map<String, Object> response = new LinkedHashMap<>();
+        try {
+            Map<String, Object> message;
+            try {
+                message = object(Json.parse(text));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseError(PARSE_ERROR, e.getMessage());
+            }
+            id = message.get("id");
+            if (!(message.get("method") instanceof String)) {
+                // a response to a request of the server, the server sends none
+                return;
+            }
+            method = (String) message.get("method");
+            Object params = message.get("params");
+            response.put("result", dispatch(method, params == null ? Map.of() : object(params)));
+        } catch (ResponseError e) {
+            if (id == null) {
+                log.println("Invalid " + method + ": " + e.getMessage());
+            }
+            response.put("error", error(e.code, e.getMessage()));
+        } catch (Exception e) {
+            log.println("Failed to handle " + method + ": " + e);
+            response.put("error", error(INTERNAL_ERROR, String.valueOf(e)));
+        } finally {
+            long nanos = System.nanoTime() - start;
+            latencies.computeIfAbsent(method, m -> new Latency()).record(nanos);
+            if (logLatency) {
+                log.printf("%s: %.3f ms%n", method, nanos / 1e6);
+            }
+        }
+        if (id != null) {
+            response.put("id", id);
+            send(response);
+        }
+    }
+
+    private static Map<String, Object> error(int code, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", code);
+        error.put("message", message);
+        return error;
+    }
+
+    private Object dispatch(String method, Map<String, Object> params) throws Exception {
+        switch (method) {
+            case "initialize":
+                return initialize();
+            case "initialized":
+                return null;
+            case "shutdown":
+                shutdownRequested = true;
+                documents.clear();
+                return null;
+            case "exit":
+                exited = true;
+                return null;
+            case "textDocument/didOpen":
+                didOpen(object(params.get("textDocument")));
+                return null;
+            case "textDocument/didChange":
+                didChange(object(params.get("textDocument")), list(params.get("contentChanges")));
+                return null;
+            case "textDocument/didClose":
+                didClose(object(params.get("textDocument")));
+                return null;
+            case "nqj/metrics":
+                return metrics();
+            default:
+                throw new ResponseError(METHOD_NOT_FOUND, "Unknown method " + method);
+        }
+    }
+
+    private Map<String, Object> initialize() {
+        Map<String, Object> sync = new LinkedHashMap<>();
+        sync.put("openClose", true);
+        sync.put("change", SYNC_INCREMENTAL);
+        Map<String, Object> capabilities = new LinkedHashMap<>();
+        capabilities.put("textDocumentSync", sync);
+        Map<String, Object> serverInfo = new LinkedHashMap<>();
+        serverInfo.put("name", "nqj-language-server");
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("capabilities", capabilities);
+        result.put("serverInfo", serverInfo);
+        return result;
+    }
+
+    private void didOpen(Map<String, Object> item) throws Exception {
+        String uri = string(item.get("uri"));
+        Document document =
+                new Document(uri, string(item.get("text")), number(item.get("version")));
+        documents.put(uri, document);
+        document.getAnalysis().setVerify(verifyIncremental);
+        document.check();
+        publishDiagnostics(document);
+    }
+
+    private void didChange(Map<String, Object> item, List<Object> changes) throws Exception {
+        Document document = documents.get(string(item.get("uri")));
+        if (document == null) {
+            throw new ResponseError(INVALID_PARAMS, "Document is not open: " + item.get("uri"));
+        }
+        for (Object c : changes) {
+            Map<String, Object> change = object(c);
+            String newText = string(change.get("text"));
+            if (change.get("range") == null) {
+                document.setText(newText);
+            } else {
+                Map<String, Object> range = object(change.get("range"));
+                SourceText text = document.getText();
+                int start = offset(text, object(range.get("start")));
+                int end = offset(text, object(range.get("end")));
+                if (end < start) {
+                    throw new ResponseError(INVALID_PARAMS, "Invalid range " + range);
+                }
+                document.edit(new TextEdit(start, end - start, newText));
+            }
+        }
+        document.setVersion(number(item.get("version")));
+        document.check();
+        publishDiagnostics(document);
+    }
+
+    private void didClose(Map<String, Object> item) throws IOException {
+        Document document = documents.remove(string(item.get("uri")));
+        if (document != null) {
+            Map<String, Object> params = new LinkedHashMap<>();
+            params.put("uri", document.getUri());
+            params.put("diagnostics", List.of());
+            notify("textDocument/publishDiagnostics", params);
+        }
+    }
+
+    /**
+     * Converts a zero based position of the protocol to an offset.
+     */
+    private static int offset(SourceText text, Map<String, Object> position) {
+        return text.offset((int) number(position.get("line")) + 1,
+                (int) number(position.get("character")) + 1);
+    }
+
+    private void publishDiagnostics(Document document) throws IOException {
+        List<Object> diagnostics = new ArrayList<>();
+        for (SyntaxError e : document.getSyntaxErrors()) {
+            diagnostics.add(diagnostic(e.getSource(), e.getMessage()));
+        }
+        for (TypeError e : document.getTypeErrors()) {
+            diagnostics.add(diagnostic(e.getSource(), e.getMessage()));
+        }
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("uri", document.getUri());
+        params.put("version", document.getVersion());
+        params.put("diagnostics", diagnostics);
+        notify("textDocument/publishDiagnostics", params);
+    }
+
+    private static Map<String, Object> diagnostic(SourcePosition source, String message) {
+        Map<String, Object> range = new LinkedHashMap<>();
+        if (source == null) {
+            range.put("start", position(1, 1));
+            range.put("end", position(1, 1));
+        } else {
+            range.put("start", position(source.getLine(), source.getColumn()));
+            range.put("end", position(source.getEndLine(), source.getEndColumn()));
+        }
+        Map<String, Object> diagnostic = new LinkedHashMap<>();
+        diagnostic.put("range", range);
+        diagnostic.put("severity", SEVERITY_ERROR);
+        diagnostic.put("source", "nqj");
+        diagnostic.put("message", message);
+        return diagnostic;
+    }
+
+    private static Map<String, Object> position(int line, int column) {
+        Map<String, Object> position = new LinkedHashMap<>();
+        position.put("line", Math.max(line - 1, 0));
+        position.put("character", Math.max(column - 1, 0));
+        return position;
+    }
+
+    private void notify(String method, Map<String, Object> params) throws IOException {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("method", method);
+        message.put("params", params);
+        send(message);
+    }
+
+    /**
+     * The number of messages and the mean and maximum latency in milliseconds per method.
+     */
+    private Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        latencies.forEach((method, latency) -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", latency.count);
+            m.put("meanMillis", latency.total / 1e6 / latency.count);
+            m.put("maxMillis", latency.max / 1e6);
+            metrics.put(method, m);
+        });
+        return metrics;
+    }
+
+    /**
+     * Returns the message counts and latencies per method.
+     */
+    public String statistics() {
+        StringBuilder sb = new StringBuilder();
+        latencies.forEach((method, latency) -> sb.append(String.format(
+                "%s: %d messages, mean latency: %.3f ms, max latency: %.3f ms%n",
+                method, latency.count, latency.total / 1e6 / latency.count,
+                latency.max / 1e6)));
+        return sb.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value) {
+        if (!(value instanceof Map)) {
+            throw new ResponseError(INVALID_PARAMS, "Expected an object: " + value);
+        }
+        return (Map<String, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object value) {
+        if (!(value instanceof List)) {
+            throw new ResponseError(INVALID_PARAMS, "Expected an array: " + value);
+        }
+        return (List<Object>) value;
+    }
+
+    private static String string(Object value) {
+        if (!(value instanceof String)) {
+            throw new ResponseError(INVALID_PARAMS, "Expected a string: " + value);
+        }
+        return (String) value;
+    }
+
+    private static long number(Object value) {
+        if (!(value instanceof Number)) {
+            throw new ResponseError(INVALID_PARAMS, "Expected a number: " + value);
+        }
+        return ((Number) value).longValue();
+    }
+}
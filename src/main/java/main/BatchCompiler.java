@@ -0,0 +1,274 @@
+package main;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many NQJ programs in one JVM using a fork-join pool.
+ * Inputs can be files, directories (searched recursively for .java files),
+ * glob patterns or argument files prefixed with '@' that contain one input per line.
+ * The diagnostics of all programs are collected in one report, which is ordered by input
+ * path and therefore independent of the number of threads.
+ *
+ * <p>With an output directory the .ll file of an input is written to the same relative path
+ * below it. For absolute inputs the root is dropped and parent directories ".." are
+ * written as "__", so that no output leaves the output directory.
+ */
+public class BatchCompiler {
+
+    private final List<Path> inputs;
+    private final Path outputDir;
+    private final int threads;
+
+    /**
+     * Creates a batch compiler for the given inputs.
+     * @param outputDir directory for the .ll files, or null to write them next to the inputs
+     * @throws IllegalArgumentException if two inputs would be written to the same file
+     */
+    public BatchCompiler(List<Path> inputs, Path outputDir, int threads) {
+        this.inputs = inputs;
+        this.outputDir = outputDir;
+        this.threads = threads;
+        Map<Path, Path> targets = new HashMap<>();
+        for (Path input : inputs) {
+            Path target = outputFile(input).toAbsolutePath().normalize();
+            Path other = targets.putIfAbsent(target, input);
+            if (other != null) {
+                throw new IllegalArgumentException("Inputs " + other + " and " + input
+                        + " are both compiled to " + target);
+            }
+        }
+    }
+
+    /**
+     * Entry main function.
+     * Arguments: [-d outputDir] [-j threads] [--report file] inputs...
+     */
+    public static void main(String[] args) throws Exception {
+        Path outputDir = null;
+        Path reportFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-d":
+                    outputDir = Paths.get(args[++i]);
+                    break;
+                case "-j":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--report":
+                    reportFile = Paths.get(args[++i]);
+                    break;
+                default:
+                    patterns.add(args[i]);
+            }
+        }
+        if (patterns.isEmpty()) {
+            System.err.println("Usage: BatchCompiler [-d outputDir] [-j threads] "
+                    + "[--report file] (file | directory | glob | @argfile)...");
+            System.exit(2);
+        }
+
+        BatchCompiler compiler;
+        try {
+            compiler = new BatchCompiler(expandInputs(patterns), outputDir, threads);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        List<Result> results = compiler.compileAll();
+        String report = report(results);
+        if (reportFile == null) {
+            System.out.print(report);
+        } else {
+            writeAtomically(reportFile, report);
+        }
+        if (results.stream().anyMatch(r -> !r.isSuccess())) {
+            System.exit(7);
+        }
+    }
+
+    /**
+     * Resolves directories, globs and argument files to a sorted list of distinct files.
+     */
+    public static List<Path> expandInputs(List<String> patterns) throws IOException {
+        SortedSet<Path> result = new TreeSet<>();
+        for (String pattern : patterns) {
+            expandInput(pattern, result);
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static void expandInput(String pattern, SortedSet<Path> result) throws IOException {
+        if (pattern.startsWith("@")) {
+            for (String line : Files.readAllLines(Paths.get(pattern.substring(1)))) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    expandInput(line, result);
+                }
+            }
+        } else if (pattern.contains("*") || pattern.contains("?") || pattern.contains("{")) {
+            // walk from the longest prefix without wildcards
+            Path base = Paths.get(".");
+            String[] parts = pattern.split("/");
+            int i = 0;
+            StringBuilder prefix = new StringBuilder();
+            while (i < parts.length - 1 && !parts[i].matches(".*[*?{\\[].*")) {
+                prefix.append(parts[i]).append("/");
+                i++;
+            }
+            if (prefix.length() > 0) {
+                base = Paths.get(prefix.toString());
+            }
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            Path relativeTo = Paths.get(".");
+            if (!Files.isDirectory(base)) {
+                return;
+            }
+            try (Stream<Path> files = Files.walk(base)) {
+                files.filter(Files::isRegularFile)
+                        .map(p -> p.startsWith(relativeTo) ? relativeTo.relativize(p) : p)
+                        .filter(matcher::matches)
+                        .forEach(p -> result.add(p.normalize()));
+            }
+        } else {
+            Path path = Paths.get(pattern);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile)
+                            .filter(p -> p.toString().endsWith(".java"))
+                            .forEach(p -> result.add(p.normalize()));
+                }
+            } else {
+                result.add(path.normalize());
+            }
+        }
+    }
+
+    /**
+     * Compiles all inputs in parallel and returns the results in input order.
+     */
+    public List<Result> compileAll() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<Result>> tasks = inputs.stream()
+                    .map(input -> pool.submit(() -> compile(input)))
+                    .collect(Collectors.toList());
+            List<Result> results = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<Result> task : tasks) {
+                results.add(task.join());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Result compile(Path input) {
+        List<String> diagnostics = new ArrayList<>();
+        try {
+            NotQuiteJavaCompiler compiler = new NotQuiteJavaCompiler();
+            compiler.compileFile(input.toFile());
+            compiler.getSyntaxErrors().forEach(e -> diagnostics.add(e.toString()));
+            compiler.getTypeErrors().forEach(e -> diagnostics.add(e.toString()));
+            if (diagnostics.isEmpty()) {
+                writeAtomically(outputFile(input), compiler.getLlvmProg().toString());
+            }
+        } catch (Exception e) {
+            diagnostics.add("Internal compiler error: " + e);
+        }
+        return new Result(input, diagnostics);
+    }
+
+    /**
+     * The .ll file of an input.
+     */
+    public Path outputFile(Path input) {
+        String name = input.getFileName() + ".ll";
+        if (outputDir == null) {
+            return input.resolveSibling(name);
+        }
+        Path target = outputDir;
+        Path parent = input.normalize().getParent();
+        if (parent != null) {
+            if (parent.isAbsolute()) {
+                parent = parent.getRoot().relativize(parent);
+            }
+            for (Path dir : parent) {
+                target = target.resolve(dir.toString().equals("..") ? "__" : dir.toString());
+            }
+        }
+        return target.resolve(name);
+    }
+
+    /**
+     * Writes a file such that readers never observe a partially written file.
+     */
+    static void writeAtomically(Path target, String content) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Builds the aggregated diagnostics report.
+     */
+    public static String report(List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        int failed = 0;
+        for (Result r : results) {
+            if (r.isSuccess()) {
+                continue;
+            }
+            failed++;
+            sb.append(r.getInput()).append(":\n");
+            for (String d : r.getDiagnostics()) {
+                sb.append("    ").append(d).append("\n");
+            }
+        }
+        sb.append("Compiled ").append(results.size()).append(" programs, ")
+                .append(results.size() - failed).append(" succeeded, ")
+                .append(failed).append(" failed.\n");
+        return sb.toString();
+    }
+
+    /**
+     * Outcome of compiling a single input.
+     */
+    public static class Result {
+        private final Path input;
+        private final List<String> diagnostics;
+
+        Result(Path input, List<String> diagnostics) {
+            this.input = input;
+            this.diagnostics = diagnostics;
+        }
+
+        public Path getInput() {
+            return input;
+        }
+
+        public List<String> getDiagnostics() {
+            return diagnostics;
+        }
+
+        public boolean isSuccess() {
+            return diagnostics.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package main;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content addressed cache for compiler artifacts (.ll, .bc, .o and executables).
+ * Entries are keyed by a hash of the source, the compiler version and the options.
+ *
+ * <p>The cache directory can be shared by several processes: entries are published with
+ * an atomic rename, and a lock file guards reads against concurrent eviction.
+ * When the cache grows beyond its size limit, the least recently used entries are deleted,
+ * always with all of their files.
+ */
+public class CompileCache {
+
+    private static final String LOCK_FILE = ".lock";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // file locks are held per process, so threads of this process synchronize here first
+    private static final Object PROCESS_LOCK = new Object();
+
+    private final Path dir;
+    private final long sizeLimit;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Opens (and if necessary creates) the cache in the given directory.
+     */
+    public CompileCache(Path dir, long sizeLimit) throws IOException {
+        this.dir = dir;
+        this.sizeLimit = sizeLimit;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Calculates the cache key for a program.
+     */
+    public String key(String source, CompilerOptions options) {
+        return key(compilerVersion(), source, options);
+    }
+
+    /**
+     * Calculates the cache key for a program compiled by the given compiler version.
+     */
+    public static String key(String version, String source, CompilerOptions options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(version.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(options.fingerprint().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Version of the running compiler.
+     * Falls back to the modification time of the compiled classes for development builds.
+     */
+    public static String compilerVersion() {
+        String version = NotQuiteJavaCompiler.class.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        try {
+            URL classFile = NotQuiteJavaCompiler.class.getResource("NotQuiteJavaCompiler.class");
+            return "dev-" + classFile.openConnection().getLastModified();
+        } catch (IOException | NullPointerException e) {
+            return "dev";
+        }
+    }
+
+    /**
+     * Copies all artifacts of an entry to the targets, if the entry contains all of them.
+     * @param name the name of the program, which the file names of the targets start with
+     * @return true on a cache hit
+     */
+    public boolean fetch(String key, String name, List<Path> targets) throws IOException {
+        synchronized (PROCESS_LOCK) {
+            try (FileChannel lockChannel = openLockFile();
+                 FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, true)) {
+                for (Path target : targets) {
+                    if (!Files.exists(entryFile(key, name, target))) {
+                        misses.incrementAndGet();
+                        return false;
+                    }
+                }
+                FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+                for (Path target : targets) {
+                    Path entry = entryFile(key, name, target);
+                    Files.copy(entry, target, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.COPY_ATTRIBUTES);
+                    // the modification time records the last use for the LRU eviction
+                    Files.setLastModifiedTime(entry, now);
+                }
+                hits.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Stores the given artifacts under the key and evicts old entries if necessary.
+     * @param name the name of the program, which the file names of the artifacts start with
+     */
+    public void store(String key, String name, List<Path> artifacts) throws IOException {
+        List<Path> temps = new ArrayList<>();
+        try {
+            // copy outside of the lock, publishing is a cheap rename
+            for (Path artifact : artifacts) {
+                Path temp = Files.createTempFile(dir, key, TEMP_SUFFIX);
+                temps.add(temp);
+                Files.copy(artifact, temp, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            synchronized (PROCESS_LOCK) {
+                try (FileChannel lockChannel = openLockFile();
+                     FileLock lock = lockChannel.lock()) {
+                    for (int i = 0; i < artifacts.size(); i++) {
+                        Path entry = entryFile(key, name, artifacts.get(i));
+                        Files.move(temps.get(i), entry, StandardCopyOption.ATOMIC_MOVE,
+                                StandardCopyOption.REPLACE_EXISTING);
+                        Files.setLastModifiedTime(entry,
+                                FileTime.fromMillis(System.currentTimeMillis()));
+                    }
+                    evict();
+                }
+            }
+        } finally {
+            for (Path temp : temps) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Deletes least recently used entries until the cache fits into its size limit.
+     * An entry is deleted with all of its files, so that no partial entry remains.
+     * Must be called while holding the exclusive lock.
+     */
+    private void evict() throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        long size = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.equals(LOCK_FILE) || name.endsWith(TEMP_SUFFIX)) {
+                    continue;
+                }
+                int dot = name.indexOf('.');
+                String key = dot < 0 ? name : name.substring(0, dot);
+                Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+                long fileSize = Files.size(p);
+                entry.files.add(p);
+                entry.size += fileSize;
+                FileTime modified = Files.getLastModifiedTime(p);
+                if (entry.lastUse == null || modified.compareTo(entry.lastUse) > 0) {
+                    entry.lastUse = modified;
+                }
+                size += fileSize;
+            }
+        }
+        if (size <= sizeLimit) {
+            return;
+        }
+        List<Entry> byLastUse = new ArrayList<>(entries.values());
+        byLastUse.sort(Comparator.comparing(e -> e.lastUse));
+        for (Entry entry : byLastUse) {
+            if (size <= sizeLimit) {
+                break;
+            }
+            for (Path file : entry.files) {
+                Files.deleteIfExists(file);
+            }
+            size -= entry.size;
+        }
+    }
+
+    /**
+     * The files stored under one key.
+     */
+    private static class Entry {
+        final List<Path> files = new ArrayList<>();
+        long size;
+        FileTime lastUse;
+    }
+
+    private FileChannel openLockFile() throws IOException {
+        return FileChannel.open(dir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * An entry stores one file per artifact, distinguished by the part of the file name
+     * after the program name, e.g. ".ll" or ".exe".
+     */
+    private Path entryFile(String key, String name, Path artifact) {
+        String fileName = artifact.getFileName().toString();
+        if (!fileName.startsWith(name)) {
+            throw new IllegalArgumentException("Artifact " + artifact
+                    + " does not belong to the program " + name);
+        }
+        return dir.resolve(key + fileName.substring(name.length()));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String statistics() {
+        return "compile cache: " + hits.get() + " hits, " + misses.get() + " misses";
+    }
+}
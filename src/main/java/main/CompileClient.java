@@ -0,0 +1,138 @@
+package main;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin client for the {@link CompileDaemon}.
+ */
+public class CompileClient implements Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Connects to a daemon on the loopback interface.
+     */
+    public CompileClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Entry main function.
+     * Arguments: [--port n] (file | --stats | --shutdown).
+     */
+    public static void main(String[] args) throws Exception {
+        int port = CompileDaemon.DEFAULT_PORT;
+        int i = 0;
+        if (args.length > 1 && args[0].equals("--port")) {
+            port = Integer.parseInt(args[1]);
+            i = 2;
+        }
+        if (i >= args.length) {
+            System.err.println("Usage: CompileClient [--port n] (file | --stats | --shutdown)");
+            System.exit(2);
+        }
+
+        try (CompileClient client = new CompileClient(port)) {
+            if (args[i].equals("--stats")) {
+                System.out.println(client.statistics());
+                return;
+            }
+            if (args[i].equals("--shutdown")) {
+                System.out.println(client.shutdownDaemon());
+                return;
+            }
+            File inputFile = new File(args[i]);
+            String source = Files.readString(inputFile.toPath());
+            Result result = client.compile(inputFile.getPath(), source);
+            result.getDiagnostics().forEach(System.out::println);
+            if (result.getStatus() != CompileDaemon.STATUS_OK) {
+                System.exit(7);
+            }
+            Files.writeString(new File(inputFile.getName() + ".ll").toPath(), result.getLlvmCode());
+        }
+    }
+
+    /**
+     * Sends a program to the daemon and waits for the translated llvm code.
+     */
+    public Result compile(String inputName, String source) throws IOException {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(CompileDaemon.COMPILE);
+        out.writeUTF(inputName);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+
+        int status = in.readInt();
+        int diagnosticCount = in.readInt();
+        if (diagnosticCount < 0) {
+            throw new IOException("Invalid number of diagnostics " + diagnosticCount);
+        }
+        List<String> diagnostics = new ArrayList<>();
+        for (int i = 0; i < diagnosticCount; i++) {
+            diagnostics.add(CompileDaemon.readString(in));
+        }
+        String code = CompileDaemon.readString(in);
+        return new Result(status, diagnostics, code);
+    }
+
+    /**
+     * Requests the latency and throughput counters of the daemon.
+     */
+    public String statistics() throws IOException {
+        out.writeInt(CompileDaemon.STATS);
+        out.flush();
+        return in.readUTF();
+    }
+
+    /**
+     * Stops the daemon and returns its final counters.
+     */
+    public String shutdownDaemon() throws IOException {
+        out.writeInt(CompileDaemon.SHUTDOWN);
+        out.flush();
+        return in.readUTF();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Answer of the daemon for a single compile request.
+     */
+    public static class Result {
+        private final int status;
+        private final List<String> diagnostics;
+        private final String llvmCode;
+
+        Result(int status, List<String> diagnostics, String llvmCode) {
+            this.status = status;
+            this.diagnostics = diagnostics;
+            this.llvmCode = llvmCode;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public List<String> getDiagnostics() {
+            return diagnostics;
+        }
+
+        public String getLlvmCode() {
+            return llvmCode;
+        }
+    }
+}
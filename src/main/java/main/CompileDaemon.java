@@ -0,0 +1,356 @@
+package main;
+
+import frontend.CompilerThread;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long-lived compile server listening on a loopback socket.
+ * Keeping the JVM alive avoids paying for startup, class loading and a cold JIT
+ * on every compiled file. Every connection is read by its own daemon thread, which hands
+ * the compile requests to a fixed pool of worker threads, so idle connections do not
+ * occupy a worker. The workers are compiler threads with a large stack, which compile
+ * the requests directly, see {@link CompilerThread}.
+ *
+ * <p>The protocol is a sequence of requests on one connection, each starting with an
+ * int opcode (see {@link #COMPILE}, {@link #STATS} and {@link #SHUTDOWN}).
+ * A compile request carries the input name (UTF) followed by the length-prefixed UTF-8
+ * source of at most {@link #MAX_SOURCE_LENGTH} bytes. The answer is a status, the
+ * number of diagnostics, each diagnostic and the llvm code as length-prefixed UTF-8.
+ */
+public class CompileDaemon {
+
+    public static final int DEFAULT_PORT = 7317;
+
+    public static final int COMPILE = 1;
+    public static final int STATS = 2;
+    public static final int SHUTDOWN = 3;
+
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_ERRORS = 1;
+    public static final int STATUS_FAILURE = 2;
+
+    /**
+     * The largest source accepted in bytes. A request with a longer or negative length
+     * is answered with {@link #STATUS_FAILURE} and its connection is closed.
+     */
+    public static final int MAX_SOURCE_LENGTH = 64 << 20;
+
+    private static final String WARMUP_PROGRAM = "int main() {\n"
+            + "    int[] a;\n"
+            + "    int i;\n"
+            + "    a = new int[10];\n"
+            + "    i = 0;\n"
+            + "    while (i < a.length) {\n"
+            + "        a[i] = i * 2 + 1;\n"
+            + "        i = i + 1;\n"
+            + "    }\n"
+            + "    printInt(a[3]);\n"
+            + "    return 0;\n"
+            + "}\n";
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final long startTime = System.nanoTime();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    /**
+     * A client connection. It is idle while it waits for the next request.
+     */
+    private static class Connection {
+        final Socket socket;
+        volatile boolean idle = true;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+    }
+
+    /**
+     * Binds the daemon to the given port on the loopback interface.
+     */
+    public CompileDaemon(int port, int threads) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.workers = CompilerThread.newPool(threads, CompilerThread.DEFAULT_STACK_SIZE);
+    }
+
+    /**
+     * Entry main function.
+     * Arguments: [port] [threads] [warmup iterations].
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1
+                ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        int warmup = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        CompileDaemon daemon = new CompileDaemon(port, threads);
+        daemon.warmUp(warmup);
+        System.err.println("NQJ compile daemon listening on port " + daemon.getPort()
+                + " with " + threads + " workers");
+        daemon.serve();
+        System.err.println(daemon.statistics());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Compiles a small program repeatedly, so that the first requests already run jitted code.
+     */
+    public void warmUp(int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            NotQuiteJavaCompiler compiler = new NotQuiteJavaCompiler();
+            compiler.compileString("warmup.java", WARMUP_PROGRAM);
+            compiler.getLlvmProg().toString();
+        }
+    }
+
+    /**
+     * Accepts connections until a shutdown request arrives.
+     */
+    public void serve() throws IOException, InterruptedException {
+        try {
+            while (running) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    if (!running) {
+                        break;
+                    }
+                    throw e;
+                }
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                Thread reader = new Thread(() -> handleConnection(connection),
+                        "nqj-daemon-connection");
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes the idle ones.
+     * Requests in progress are finished and answered, then their connections are closed.
+     */
+    public void shutdown() {
+        running = false;
+        closeQuietly(serverSocket);
+        for (Connection connection : connections) {
+            if (connection.idle) {
+                closeQuietly(connection.socket);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    private void handleConnection(Connection connection) {
+        Socket socket = connection.socket;
+        try (socket;
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                connection.idle = true;
+                // checked after marking the connection idle, see shutdown
+                if (!running) {
+                    return;
+                }
+                int opcode;
+                try {
+                    opcode = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                connection.idle = false;
+                switch (opcode) {
+                    case COMPILE:
+                        handleCompile(in, out);
+                        break;
+                    case STATS:
+                        out.writeUTF(statistics());
+                        break;
+                    case SHUTDOWN:
+                        out.writeUTF(statistics());
+                        out.flush();
+                        shutdown();
+                        return;
+                    default:
+                        throw new IOException("Unknown request " + opcode);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // idle connections are closed by shutdown
+            if (running) {
+                System.err.println("Connection failed: " + e.getMessage());
+            }
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    /**
+     * The answer to a compile request.
+     */
+    private static class CompileResult {
+        final int status;
+        final List<String> diagnostics;
+        final String llvmCode;
+
+        CompileResult(int status, List<String> diagnostics, String llvmCode) {
+            this.status = status;
+            this.diagnostics = diagnostics;
+            this.llvmCode = llvmCode;
+        }
+    }
+
+    private void handleCompile(DataInputStream in, DataOutputStream out) throws IOException {
+        String inputName = in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_SOURCE_LENGTH) {
+            failedRequests.increment();
+            writeResult(out, failure("Invalid source length " + length));
+            out.flush();
+            // the rest of the request cannot be skipped reliably
+            throw new IOException("Invalid source length " + length + " of " + inputName);
+        }
+        byte[] source = new byte[length];
+        in.readFully(source);
+
+        CompileResult result;
+        try {
+            Future<CompileResult> task = workers.submit(
+                    () -> compile(inputName, new String(source, StandardCharsets.UTF_8)));
+            result = task.get();
+        } catch (RejectedExecutionException e) {
+            failedRequests.increment();
+            result = failure("The daemon is shutting down");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compiling " + inputName);
+        } catch (ExecutionException e) {
+            throw new IOException("Compiling " + inputName + " failed", e.getCause());
+        }
+        writeResult(out, result);
+    }
+
+    private static CompileResult failure(String message) {
+        return new CompileResult(STATUS_FAILURE, List.of(message), "");
+    }
+
+    private static void writeResult(DataOutputStream out, CompileResult result)
+            throws IOException {
+        out.writeInt(result.status);
+        out.writeInt(result.diagnostics.size());
+        for (String d : result.diagnostics) {
+            writeString(out, d);
+        }
+        writeString(out, result.llvmCode);
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string. Unlike writeUTF, it has no length limit.
+     */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     */
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compiles a program on a worker thread and records the latency.
+     * The worker is a compiler thread, so the compiler does not start another thread.
+     */
+    private CompileResult compile(String inputName, String source) {
+        long start = System.nanoTime();
+        int status;
+        List<String> diagnostics = new ArrayList<>();
+        String llvmCode = "";
+        try {
+            NotQuiteJavaCompiler compiler = new NotQuiteJavaCompiler();
+            compiler.compileString(inputName, source);
+            compiler.getSyntaxErrors().forEach(e -> diagnostics.add(e.toString()));
+            compiler.getTypeErrors().forEach(e -> diagnostics.add(e.toString()));
+            if (diagnostics.isEmpty()) {
+                status = STATUS_OK;
+                llvmCode = compiler.getLlvmProg().toString();
+            } else {
+                status = STATUS_ERRORS;
+            }
+        } catch (Exception e) {
+            status = STATUS_FAILURE;
+            diagnostics.add("Internal compiler error: " + e);
+            failedRequests.increment();
+        }
+        recordLatency(System.nanoTime() - start);
+        return new CompileResult(status, diagnostics, llvmCode);
+    }
+
+    private void recordLatency(long nanos) {
+        requests.increment();
+        totalLatency.add(nanos);
+        maxLatency.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Returns the request counters, latencies and the throughput since startup.
+     */
+    public String statistics() {
+        long count = requests.sum();
+        double uptime = (System.nanoTime() - startTime) / 1e9;
+        double meanMillis = count == 0 ? 0 : totalLatency.sum() / 1e6 / count;
+        return String.format("requests: %d, failed: %d, mean latency: %.3f ms, "
+                        + "max latency: %.3f ms, throughput: %.1f requests/s",
+                count, failedRequests.sum(), meanMillis, maxLatency.get() / 1e6,
+                count / Math.max(uptime, 1e-9));
+    }
+}
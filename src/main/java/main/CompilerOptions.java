@@ -0,0 +1,227 @@
+package main;
+
+import frontend.CompilerThread;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options of the compiler driver.
+ */
+public class CompilerOptions {
+
+    private Path cacheDir;
+    private long cacheSizeLimit = 1L << 30;
+    private boolean timePasses;
+    private boolean printStats;
+    private boolean verify;
+    private boolean pipeline;
+    private int parseThreads = 1;
+    private boolean fastParser;
+    private boolean fastLexer;
+    private int checkThreads = 1;
+    private boolean emitComments = true;
+    private long stackSize = CompilerThread.DEFAULT_STACK_SIZE;
+
+    /**
+     * Parses the known options and returns the remaining arguments.
+     */
+    public List<String> parse(String[] args) {
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--cache":
+                    cacheDir = Paths.get(args[++i]);
+                    break;
+                case "--cache-size":
+                    // given in megabytes
+                    cacheSizeLimit = Long.parseLong(args[++i]) << 20;
+                    break;
+                case "--time-passes":
+                    timePasses = true;
+                    break;
+                case "--stats":
+                    printStats = true;
+                    break;
+                case "--pipeline":
+                    pipeline = true;
+                    break;
+                case "--parse-threads":
+                    parseThreads = Integer.parseInt(args[++i]);
+                    if (parseThreads < 1) {
+                        throw new IllegalArgumentException("--parse-threads must be positive");
+                    }
+                    break;
+                case "--fast-parser":
+                    fastParser = true;
+                    break;
+                case "--fast-lexer":
+                    fastLexer = true;
+                    break;
+                case "--check-threads":
+                    checkThreads = Integer.parseInt(args[++i]);
+                    if (checkThreads < 1) {
+                        throw new IllegalArgumentException("--check-threads must be positive");
+                    }
+                    break;
+                case "--stack-size":
+                    // given in megabytes
+                    stackSize = Long.parseLong(args[++i]) << 20;
+                    if (stackSize <= 0) {
+                        throw new IllegalArgumentException("--stack-size must be positive");
+                    }
+                    break;
+                case "--no-comments":
+                    emitComments = false;
+                    break;
+                case "--verify":
+                    verify = true;
+                    break;
+                default:
+                    rest.add(args[i]);
+            }
+        }
+        return rest;
+    }
+
+    /**
+     * Describes all options which influence the produced artifacts.
+     * Used as part of the compile cache key.
+     */
+    public String fingerprint() {
+        // the comments are part of the .ll artifacts
+        return toolchain() + (emitComments ? "" : ";no-comments");
+    }
+
+    private String toolchain() {
+        if (pipeline) {
+            return "toolchain=llc -filetype=obj (stdin),clang";
+        }
+        return "toolchain=llvm-as,llc -filetype=obj,clang";
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    public void setCacheDir(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public long getCacheSizeLimit() {
+        return cacheSizeLimit;
+    }
+
+    public void setCacheSizeLimit(long cacheSizeLimit) {
+        this.cacheSizeLimit = cacheSizeLimit;
+    }
+
+    public boolean isTimePasses() {
+        return timePasses;
+    }
+
+    public void setTimePasses(boolean timePasses) {
+        this.timePasses = timePasses;
+    }
+
+    public boolean isPrintStats() {
+        return printStats;
+    }
+
+    public void setPrintStats(boolean printStats) {
+        this.printStats = printStats;
+    }
+
+    /**
+     * Whether phase statistics have to be collected.
+     */
+    public boolean isCollectStatistics() {
+        return timePasses || printStats;
+    }
+
+    public boolean isVerify() {
+        return verify;
+    }
+
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    public boolean isPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(boolean pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * The number of threads used to parse large inputs.
+     * Only used together with the fast parser and lexer.
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
+    /**
+     * Whether the hand-written parser is used instead of the parser generated by CUP.
+     * It does not report syntax errors: if it fails, the input is silently parsed again
+     * by the generated parser, which reports the errors.
+     */
+    public boolean isFastParser() {
+        return fastParser;
+    }
+
+    public void setFastParser(boolean fastParser) {
+        this.fastParser = fastParser;
+    }
+
+    /**
+     * Whether the hand-written lexer is used instead of the lexer generated by JFlex.
+     */
+    public boolean isFastLexer() {
+        return fastLexer;
+    }
+
+    public void setFastLexer(boolean fastLexer) {
+        this.fastLexer = fastLexer;
+    }
+
+    /**
+     * The number of threads used to type check method bodies.
+     */
+    public int getCheckThreads() {
+        return checkThreads;
+    }
+
+    public void setCheckThreads(int checkThreads) {
+        this.checkThreads = checkThreads;
+    }
+
+    /**
+     * Whether statements are marked with comments in the generated code.
+     */
+    public boolean isEmitComments() {
+        return emitComments;
+    }
+
+    public void setEmitComments(boolean emitComments) {
+        this.emitComments = emitComments;
+    }
+
+    /**
+     * The stack size in bytes of the thread running parser, analysis and translation.
+     */
+    public long getStackSize() {
+        return stackSize;
+    }
+
+    public void setStackSize(long stackSize) {
+        this.stackSize = stackSize;
+    }
+}
@@ -1,17 +1,31 @@
 package main;
 
 import analysis.Analysis;
+import analysis.CompilationContext;
 import analysis.TypeError;
+import frontend.CompilerThread;
 import frontend.NQJFrontend;
+import frontend.SourceText;
 import frontend.SyntaxError;
+import minillvm.analysis.Checks;
+import minillvm.ast.BasicBlock;
+import minillvm.ast.Proc;
 import minillvm.ast.Prog;
+import minillvm.printer.DuplicateNames;
+import minillvm.printer.PrettyPrinter;
+import notquitejava.ast.NQJElement;
 import notquitejava.ast.NQJProgram;
 import translation.Translator;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Scanner;
 
@@ -24,21 +38,54 @@ public class NotQuiteJavaCompiler {
     private Prog llvmProg;
     private Analysis analysis;
     private NQJFrontend frontend;
+    private CompilationContext context;
+    private final CompilerOptions options;
+    private PhaseStatistics statistics;
+
+    public NotQuiteJavaCompiler() {
+        this(new CompilerOptions());
+    }
+
+    public NotQuiteJavaCompiler(CompilerOptions options) {
+        this.options = options;
+    }
 
     /**
      * Entry main function.
      */
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchCompiler.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        CompilerOptions options = new CompilerOptions();
+        List<String> files = options.parse(args);
         String fileName;
-        if (args.length > 0) {
-            fileName = args[0];
+        if (!files.isEmpty()) {
+            fileName = files.get(0);
         } else {
             System.out.println("Enter a filename: ");
             fileName = new Scanner(System.in).nextLine();
         }
-        NotQuiteJavaCompiler compiler = new NotQuiteJavaCompiler();
+        NotQuiteJavaCompiler compiler = new NotQuiteJavaCompiler(options);
         File inputFile = new File(fileName);
-        compiler.compileFile(inputFile);
+        String name = inputFile.getName();
+
+        // decoded once, so that the cache key is calculated from the compiled text
+        SourceText input = SourceText.readFile(inputFile.toPath());
+        CompileCache cache = null;
+        String cacheKey = null;
+        List<Path> artifacts = artifacts(name, options);
+        if (options.getCacheDir() != null) {
+            cache = new CompileCache(options.getCacheDir(), options.getCacheSizeLimit());
+            cacheKey = cache.key(new String(input.getChars(), 0, input.getLength()), options);
+            if (cache.fetch(cacheKey, name, artifacts)) {
+                System.err.println(cache.statistics());
+                return;
+            }
+        }
+
+        compiler.compile(input);
 
         if (!compiler.getSyntaxErrors().isEmpty() || !compiler.getTypeErrors().isEmpty()) {
             compiler.getSyntaxErrors().forEach(System.out::println);
@@ -46,46 +93,141 @@ public class NotQuiteJavaCompiler {
             System.exit(7);
         }
 
-        compiler.compileLlvmCode(inputFile.getName());
+        compiler.compileLlvmCode(name);
+        compiler.printStatistics();
+
+        if (cache != null) {
+            cache.store(cacheKey, name, artifacts);
+            System.err.println(cache.statistics());
+        }
     }
 
     /**
-     * Compiles a file.
+     * Prints the phase statistics to stderr, if requested by the options.
      */
-    public void compileFile(File file) throws Exception {
-        try (FileReader r = new FileReader(file)) {
-            compile(file.getPath(), r);
+    private void printStatistics() {
+        statistics.finish();
+        if (options.isTimePasses()) {
+            System.err.print(statistics.toTable());
+        }
+        if (options.isPrintStats()) {
+            System.err.println(statistics.toJson());
         }
+    }
 
+    /**
+     * Compiles a UTF-8 encoded file.
+     */
+    public void compileFile(File file) throws Exception {
+        compile(SourceText.readFile(file.toPath()));
     }
 
     /**
      * Compiles a string.
      */
     public void compileString(String inputName, String input) throws Exception {
-        compile(inputName, new StringReader(input));
+        compile(new SourceText(inputName, input));
     }
 
     /**
      * Read, typecheck, and translate.
      */
     public void compile(String inputName, Reader input) throws Exception {
+        compile(SourceText.read(inputName, input));
+    }
+
+    /**
+     * Parse, typecheck, and translate a source text.
+     * The phases recurse over the nesting of the program and run on a thread with
+     * the stack size of the options.
+     */
+    public void compile(SourceText input) throws Exception {
+        CompilerThread.call(options.getStackSize(), () -> {
+            compilePhases(input);
+            return null;
+        });
+    }
+
+    private void compilePhases(SourceText input) throws Exception {
+        context = new CompilationContext();
+        statistics = new PhaseStatistics();
         frontend = new NQJFrontend();
-        javaProgram = frontend.parse(input);
+        frontend.setParseThreads(options.getParseThreads());
+        frontend.setStackSize(options.getStackSize());
+        frontend.setUseFastParser(options.isFastParser());
+        frontend.setUseFastLexer(options.isFastLexer());
+        javaProgram = phase("parse", () -> frontend.parse(input));
         if (!frontend.getSyntaxErrors().isEmpty()) {
             return;
         }
+        if (options.isCollectStatistics()) {
+            statistics.count("ast nodes", countAstNodes(javaProgram));
+        }
 
         // typecheck
-        analysis = new Analysis(javaProgram);
-        javaProgram = analysis.check();
+        analysis = new Analysis(javaProgram, context);
+        analysis.setCheckThreads(options.getCheckThreads());
+        analysis.setStackSize(options.getStackSize());
+        javaProgram = phase("analysis", analysis::check);
         if (!analysis.getTypeErrors().isEmpty()) {
             return;
         }
         analysis.clearAll();
         // translate
-        Translator translator = new Translator(javaProgram);
-        llvmProg = translator.translate();
+        Translator translator = new Translator(javaProgram, context);
+        translator.setEmitComments(options.isEmitComments());
+        llvmProg = phase("translate", translator::translate);
+        if (options.isCollectStatistics()) {
+            countIr(llvmProg);
+        }
+    }
+
+    /**
+     * Runs a phase, measuring it when statistics are requested.
+     */
+    private <T> T phase(String name, PhaseStatistics.Action<T> action) throws Exception {
+        if (!options.isCollectStatistics()) {
+            return action.run();
+        }
+        return statistics.time(name, action);
+    }
+
+    private static long countAstNodes(NQJElement root) {
+        long count = 0;
+        Deque<NQJElement> todo = new ArrayDeque<>();
+        todo.push(root);
+        while (!todo.isEmpty()) {
+            NQJElement e = todo.pop();
+            count++;
+            for (int i = 0; i < e.size(); i++) {
+                if (e.get(i) != null) {
+                    todo.push(e.get(i));
+                }
+            }
+        }
+        return count;
+    }
+
+    private void countIr(Prog prog) {
+        long blocks = 0;
+        long instructions = 0;
+        for (Proc proc : prog.getProcedures()) {
+            blocks += proc.getBasicBlocks().size();
+            for (BasicBlock block : proc.getBasicBlocks()) {
+                instructions += block.size();
+            }
+        }
+        statistics.count("ir procedures", prog.getProcedures().size());
+        statistics.count("ir blocks", blocks);
+        statistics.count("ir instructions", instructions);
+    }
+
+    /**
+     * Statistics of the last compilation.
+     * Phases are only measured if requested by the options.
+     */
+    public PhaseStatistics getStatistics() {
+        return statistics;
     }
 
     public NQJProgram getJavaProgram() {
@@ -113,9 +255,30 @@ public class NotQuiteJavaCompiler {
     /**
      * Compile to mini llvm code.
      */
-    private void compileLlvmCode(String name) throws IOException, InterruptedException {
+    private void compileLlvmCode(String name) throws Exception {
+        phase("duplicate names", () -> {
+            DuplicateNames.eliminateDuplicateNames(llvmProg);
+            return null;
+        });
+        if (options.isVerify()) {
+            phase("verify", () -> {
+                new Checks().checkProgram(llvmProg);
+                return null;
+            });
+        }
+        if (options.isPipeline()) {
+            compileLlvmCodePipelined(name);
+            return;
+        }
+        String llvmCode = phase("print", () -> {
+            StringBuilder sb = new StringBuilder();
+            PrettyPrinter printer = new PrettyPrinter(sb);
+            printer.setEliminateDuplicateNames(false);
+            llvmProg.match(printer);
+            return sb.toString();
+        });
         File llvmOutFile = new File(name + ".ll");
-        Files.writeString(llvmOutFile.toPath(), llvmProg.toString());
+        Files.writeString(llvmOutFile.toPath(), llvmCode);
 
         // llvm -> bitcode
         executeCommand("llvm-as", llvmOutFile.getAbsolutePath());
@@ -129,16 +292,67 @@ public class NotQuiteJavaCompiler {
         executeCommand("clang", "-o", name + ".exe", objFile.getAbsolutePath());
     }
 
+    /**
+     * Streams the printed IR into the stdin of llc, which reads textual IR directly.
+     * Code generation overlaps with printing, and neither the .ll nor the .bc file is written.
+     */
+    private void compileLlvmCodePipelined(String name) throws Exception {
+        File objFile = new File(name + ".o");
+        String[] llc = {"llc", "-filetype=obj", "-o", objFile.getAbsolutePath(), "-"};
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(llc).start();
+        StreamCollector out = new StreamCollector(process.getInputStream());
+        StreamCollector err = new StreamCollector(process.getErrorStream());
+
+        IOException writeError = null;
+        try (Writer in = new BufferedWriter(new OutputStreamWriter(
+                process.getOutputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+            phase("print (streamed)", () -> {
+                PrettyPrinter printer = new PrettyPrinter(new StringBuilder());
+                printer.setEliminateDuplicateNames(false);
+                printer.setOutput(in);
+                llvmProg.match(printer);
+                return null;
+            });
+        } catch (IOException | UncheckedIOException e) {
+            // llc exited early, its exit code and error output explain why
+            writeError = e instanceof IOException ? (IOException) e
+                    : ((UncheckedIOException) e).getCause();
+        }
+        long inputClosed = System.nanoTime();
+        int exitCode = process.waitFor();
+        if (options.isCollectStatistics()) {
+            long end = System.nanoTime();
+            statistics.recordExternal("llc (pipelined)", end - start);
+            statistics.recordExternal("llc after input", end - inputClosed);
+        }
+        printOutput(out, err);
+        if (exitCode != 0) {
+            throw new RuntimeException("Command " + Arrays.toString(llc)
+                    + " failed with error code " + exitCode);
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+
+        // link object file
+        executeCommand("clang", "-o", name + ".exe", objFile.getAbsolutePath());
+    }
+
     private void executeCommand(String... args) throws IOException, InterruptedException {
         ProcessBuilder builder = new ProcessBuilder();
         builder.command(args);
+        long start = System.nanoTime();
         Process process = builder.start();
+        // drain both streams while the process runs, a full pipe would block it
+        StreamCollector out = new StreamCollector(process.getInputStream());
+        StreamCollector err = new StreamCollector(process.getErrorStream());
+        process.getOutputStream().close();
         int exitCode = process.waitFor();
-
-        String out = readStream(process.getInputStream());
-        System.out.println(out);
-        String err = readStream(process.getErrorStream());
-        System.err.println(err);
+        if (options.isCollectStatistics()) {
+            statistics.recordExternal(args[0], System.nanoTime() - start);
+        }
+        printOutput(out, err);
 
         if (exitCode != 0) {
             throw new RuntimeException("Command " + Arrays.toString(args)
@@ -146,8 +360,48 @@ public class NotQuiteJavaCompiler {
         }
     }
 
-    private String readStream(InputStream inputStream) {
-        Scanner s = new Scanner(inputStream).useDelimiter("\\A");
-        return s.hasNext() ? s.next() : "";
+    private static void printOutput(StreamCollector out, StreamCollector err)
+            throws InterruptedException {
+        System.out.println(out.getContent());
+        System.err.println(err.getContent());
+    }
+
+    /**
+     * Reads a stream to its end on a separate thread.
+     */
+    private static class StreamCollector extends Thread {
+        private final InputStream in;
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        StreamCollector(InputStream in) {
+            this.in = in;
+            setDaemon(true);
+            start();
+        }
+
+        @Override
+        public void run() {
+            try (InputStream stream = in) {
+                stream.transferTo(content);
+            } catch (IOException e) {
+                // the process was destroyed, keep what was read so far
+            }
+        }
+
+        String getContent() throws InterruptedException {
+            join();
+            return content.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The files produced by compiling the program with the given name.
+     */
+    static List<Path> artifacts(String name, CompilerOptions options) {
+        if (options.isPipeline()) {
+            return List.of(Paths.get(name + ".o"), Paths.get(name + ".exe"));
+        }
+        return List.of(Paths.get(name + ".ll"), Paths.get(name + ".bc"),
+                Paths.get(name + ".o"), Paths.get(name + ".exe"));
     }
 }
@@ -0,0 +1,152 @@
+package main;
+
+import frontend.CompilerThread;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects wall time, cpu time and allocated bytes for each phase of a compilation,
+ * together with size counters such as the number of AST nodes and IR instructions.
+ *
+ * <p>The cpu time and allocation of a phase include the tasks it runs on pools of compiler
+ * threads, see {@link CompilerThread#newPool}. Phases can overlap, e.g. printing and llc
+ * in a pipeline, so the total wall time is measured separately, see {@link #finish()}.
+ */
+public class PhaseStatistics {
+
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private final long startNanos = System.nanoTime();
+    private long totalNanos = -1;
+
+    /**
+     * An action measured as a phase.
+     */
+    public interface Action<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * Runs the action on the current thread and records its costs under the given name.
+     */
+    public <T> T time(String name, Action<T> action) throws Exception {
+        CompilerThread.PoolUsage pool = CompilerThread.poolUsage();
+        long cpuStart = CompilerThread.cpuTime();
+        long allocStart = CompilerThread.allocatedBytes();
+        long poolCpuStart = pool.getCpuNanos();
+        long poolAllocStart = pool.getAllocatedBytes();
+        long wallStart = System.nanoTime();
+        try {
+            return action.run();
+        } finally {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = cpuStart < 0 ? -1
+                    : CompilerThread.cpuTime() - cpuStart + pool.getCpuNanos() - poolCpuStart;
+            long alloc = allocStart < 0 ? -1
+                    : CompilerThread.allocatedBytes() - allocStart
+                            + pool.getAllocatedBytes() - poolAllocStart;
+            addPhase(new Phase(name, wall, cpu, alloc));
+        }
+    }
+
+    /**
+     * Records the wall time from the creation of the statistics until now as the total.
+     * Until then, the total is the time until the statistics are formatted.
+     */
+    public synchronized void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    private synchronized long totalNanos() {
+        return totalNanos >= 0 ? totalNanos : System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Records a phase that ran outside of this JVM, e.g. an external tool.
+     * Only the wall time is known for such phases.
+     */
+    public void recordExternal(String name, long wallNanos) {
+        addPhase(new Phase(name, wallNanos, -1, -1));
+    }
+
+    /**
+     * Phases of a parallel code generation are recorded from several threads.
+     */
+    private synchronized void addPhase(Phase phase) {
+        phases.add(phase);
+    }
+
+    public synchronized void count(String counter, long value) {
+        counters.put(counter, value);
+    }
+
+    /**
+     * Formats the statistics as a human readable table.
+     */
+    public synchronized String toTable() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-24s %12s %12s %14s%n",
+                "phase", "wall ms", "cpu ms", "allocated MB"));
+        for (Phase p : phases) {
+            sb.append(String.format("%-24s %12.3f %12s %14s%n", p.name, p.wallNanos / 1e6,
+                    p.cpuNanos < 0 ? "-" : String.format("%.3f", p.cpuNanos / 1e6),
+                    p.allocatedBytes < 0 ? "-"
+                            : String.format("%.3f", p.allocatedBytes / (1024.0 * 1024.0))));
+        }
+        sb.append(String.format("%-24s %12.3f%n", "total", totalNanos() / 1e6));
+        for (Map.Entry<String, Long> c : counters.entrySet()) {
+            sb.append(String.format("%-24s %12d%n", c.getKey(), c.getValue()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats the statistics as a JSON object.
+     */
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"phases\": [");
+        boolean first = true;
+        for (Phase p : phases) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append("{\"name\": \"").append(p.name).append("\", ")
+                    .append("\"wallNanos\": ").append(p.wallNanos).append(", ")
+                    .append("\"cpuNanos\": ").append(p.cpuNanos).append(", ")
+                    .append("\"allocatedBytes\": ").append(p.allocatedBytes).append("}");
+            first = false;
+        }
+        sb.append("], \"totalWallNanos\": ").append(totalNanos());
+        sb.append(", \"counters\": {");
+        first = true;
+        for (Map.Entry<String, Long> c : counters.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append("\"").append(c.getKey()).append("\": ").append(c.getValue());
+            first = false;
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    /**
+     * Costs of a single phase, -1 if unknown.
+     */
+    private static class Phase {
+        private final String name;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+
+        Phase(String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package minillvm.analysis;
 
 import frontend.SourcePosition;
+import frontend.SourceText;
 import minillvm.ast.*;
 import minillvm.printer.PrettyPrinter;
 
@@ -12,20 +13,20 @@ import java.util.*;
  */
 public class Checks {
 
-    private Map<Element, SourcePosition> sourcePositions;
-    private String progString;
+    private Prog prog;
     private Map<BasicBlock, List<BasicBlock>> predecessorMap;
+    // the printed program with the spans of its elements, printed for the first error
+    private PrettyPrinter printer;
+    private SourceText printed;
 
     /**
      * Type check llvm program.
+     * The program is not changed, duplicate names are shown as they are in error messages.
      */
     public void checkProgram(Prog prog) {
-        StringBuilder sb = new StringBuilder();
-        PrettyPrinter printer = new PrettyPrinter(sb);
-        prog.match(printer);
-        sourcePositions = printer.getSourcePositions();
-        progString = sb.toString();
-
+        this.prog = prog;
+        this.printer = null;
+        this.printed = null;
         checkRooted(prog);
 
         for (Proc proc : prog.getProcedures()) {
@@ -508,8 +509,26 @@ public class Checks {
         return null;
     }
 
+    /**
+     * Prints the program once, when the first error is reported.
+     * Duplicate names are not eliminated, so that the check does not rename anything.
+     */
+    private void printProgram() {
+        if (printed != null) {
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        printer = new PrettyPrinter(out);
+        printer.setEliminateDuplicateNames(false);
+        printer.setRecordSpans(true);
+        prog.match(printer);
+        printed = new SourceText("", out.toString());
+    }
+
     private void error(Element e, String s) {
-        SourcePosition pos = getPos(e);
+        printProgram();
+        String progString = new String(printed.getChars(), 0, printed.getLength());
+        SourcePosition pos = getPos(printer, printed, e);
         String[] lines = progString.split("\n");
         String line = lines[pos.getLine() - 1];
 
@@ -544,11 +563,15 @@ public class Checks {
         return new String(chars);
     }
 
-    private SourcePosition getPos(Element e) {
+    private SourcePosition getPos(PrettyPrinter printer, SourceText text, Element e) {
         while (e != null) {
-            SourcePosition sourcePosition = sourcePositions.get(e);
-            if (sourcePosition != null) {
-                return sourcePosition;
+            long span = printer.getSourceSpan(e);
+            if (span != SourceText.NO_SPAN) {
+                // columns in the error message start at 0
+                int start = SourceText.start(span);
+                int end = SourceText.end(span);
+                return new SourcePosition("", text.line(start), text.column(start) - 1,
+                        text.line(end), text.column(end) - 1);
             }
             e = e.getParent();
         }
@@ -0,0 +1,91 @@
+package minillvm.printer;
+
+import minillvm.ast.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A part of a program which is printed as a separate LLVM module.
+ *
+ * <p>Each partition defines a subset of the procedures and declares all others.
+ * Struct types and string constants are repeated in every partition.
+ * The primary partition also defines the globals and the builtin functions,
+ * the other partitions refer to them as external symbols.
+ */
+public class ModulePartition {
+
+    private final int index;
+    private final Set<Proc> procedures = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long size;
+
+    private ModulePartition(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Splits the procedures of the program into the given number of partitions of
+     * similar size. Always returns exactly count partitions, some may be empty.
+     * The program should be free of duplicate names, since the modules are linked later.
+     */
+    public static List<ModulePartition> split(Prog prog, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Partition count must be positive: " + count);
+        }
+        List<ModulePartition> partitions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            partitions.add(new ModulePartition(i));
+        }
+        // largest procedures first, each into the currently smallest partition
+        List<Proc> procs = new ArrayList<>(prog.getProcedures());
+        IdentityHashMap<Proc, Long> sizes = new IdentityHashMap<>();
+        for (Proc proc : procs) {
+            long instructions = 0;
+            for (BasicBlock b : proc.getBasicBlocks()) {
+                instructions += b.size();
+            }
+            sizes.put(proc, instructions);
+        }
+        // the sort is stable, so equal sizes keep the program order
+        procs.sort((a, b) -> Long.compare(sizes.get(b), sizes.get(a)));
+        for (Proc proc : procs) {
+            ModulePartition smallest = partitions.get(0);
+            for (ModulePartition p : partitions) {
+                if (p.size < smallest.size) {
+                    smallest = p;
+                }
+            }
+            smallest.procedures.add(proc);
+            smallest.size += sizes.get(proc);
+        }
+        return partitions;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * The primary partition defines the globals and the builtin functions.
+     */
+    public boolean isPrimary() {
+        return index == 0;
+    }
+
+    /**
+     * Whether the procedure is defined in this partition, otherwise it is only declared.
+     */
+    public boolean defines(Proc proc) {
+        return procedures.contains(proc);
+    }
+
+    /**
+     * The number of instructions in the procedures of this partition.
+     */
+    public long getSize() {
+        return size;
+    }
+}
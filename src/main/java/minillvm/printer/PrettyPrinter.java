@@ -1,11 +1,15 @@
 package minillvm.printer;
 
-import frontend.SourcePosition;
+import frontend.SourceText;
 import minillvm.analysis.ExpectedType;
 import minillvm.analysis.Typechecker;
 import minillvm.ast.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,15 +22,63 @@ public class PrettyPrinter implements
 
     private final StringBuilder sb;
     private boolean includeType;
+    private boolean eliminateDuplicateNames = true;
+    private Writer output;
+    private ModulePartition partition;
     private final Map<String, String> stringConstantNames = new HashMap<>();
-    private final Map<Element, SourcePosition> sourcePositions = new HashMap<>();
-    private int currentLine = 1;
-    private int currentColumn = 0;
+    private boolean recordSpans;
+    private final Map<Element, Long> sourceSpans = new IdentityHashMap<>();
+    private long flushedLength;
 
     public PrettyPrinter(StringBuilder sb) {
         this.sb = sb;
     }
 
+    /**
+     * Disables the duplicate name elimination before printing a program,
+     * for callers which already ran it.
+     */
+    public void setEliminateDuplicateNames(boolean eliminateDuplicateNames) {
+        this.eliminateDuplicateNames = eliminateDuplicateNames;
+    }
+
+    /**
+     * Streams a printed program to the writer after each top level element,
+     * so that a consumer can start working before the whole program is printed.
+     * The string builder then only holds the current element.
+     */
+    public void setOutput(Writer output) {
+        this.output = output;
+    }
+
+    /**
+     * Prints only the given partition of a program as a module of its own.
+     */
+    public void setPartition(ModulePartition partition) {
+        this.partition = partition;
+    }
+
+    /**
+     * Records the span of each printed element in the output,
+     * see {@link #getSourceSpan(Element)}.
+     */
+    public void setRecordSpans(boolean recordSpans) {
+        this.recordSpans = recordSpans;
+    }
+
+    private void flushOutput() {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.append(sb);
+            flushedLength += sb.length();
+            sb.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Element -> String.
      */
@@ -99,11 +151,17 @@ public class PrettyPrinter implements
     }
 
     private void print2(Element e) {
-        int startLine = currentLine;
-        int startColumn = currentColumn;
+        if (!recordSpans) {
+            e.match(this);
+            return;
+        }
+        int start = outputLength();
         e.match(this);
-        sourcePositions.put(e, new SourcePosition("",
-                startLine, startColumn, currentLine, currentColumn));
+        sourceSpans.put(e, SourceText.span(start, outputLength()));
+    }
+
+    private int outputLength() {
+        return (int) (flushedLength + sb.length());
     }
 
     private Type tryCalculateType(Operand variable) {
@@ -123,15 +181,11 @@ public class PrettyPrinter implements
     }
 
     private void append(Object o) {
-        String s = o.toString();
-        currentColumn += s.length();
         sb.append(o);
     }
 
     private void appendLine() {
         sb.append("\n");
-        currentLine++;
-        currentColumn = 0;
     }
 
     private void appendLine(Object o) {
@@ -222,30 +276,65 @@ public class PrettyPrinter implements
     @Override
     public void case_Prog(Prog p) {
         // before printing a program, eliminate all duplicate names
-        DuplicateNames.eliminateDuplicateNames(p);
+        if (eliminateDuplicateNames) {
+            DuplicateNames.eliminateDuplicateNames(p);
+        }
 
         printStringConstants(p);
 
         appendLine();
         appendLine();
+        flushOutput();
 
         for (TypeStruct s : p.getStructTypes()) {
             print(s);
             appendLine();
             appendLine();
+            flushOutput();
         }
 
         for (Global g : p.getGlobals()) {
-            print(g);
+            if (partition == null || partition.isPrimary()) {
+                print(g);
+            } else {
+                printExternalDeclaration(g);
+            }
             appendLine();
             appendLine();
+            flushOutput();
         }
 
         for (Proc proc : p.getProcedures()) {
-            print(proc);
+            if (partition == null || partition.defines(proc)) {
+                print(proc);
+            } else {
+                printExternalDeclaration(proc);
+            }
+            flushOutput();
         }
 
         addBuiltins();
+        flushOutput();
+    }
+
+    private void printExternalDeclaration(Global g) {
+        append("@" + getName(g) + " = external ");
+        append(g.getIsConstant() ? "constant " : "global ");
+        append(elementToString(g.getType()));
+    }
+
+    private void printExternalDeclaration(Proc proc) {
+        append("declare " + proc.getReturnType() + " @" + getName(proc) + "(");
+        boolean first = true;
+        for (Parameter p : proc.getParameters()) {
+            if (!first) {
+                append(", ");
+            }
+            append(p.getType());
+            first = false;
+        }
+        appendLine(")");
+        appendLine();
     }
 
     private void printStringConstants(Prog p) {
@@ -282,6 +371,10 @@ public class PrettyPrinter implements
         appendLine();
         appendLine("declare void @exit(i32)");
         appendLine();
+        if (partition != null && !partition.isPrimary()) {
+            appendLine("declare void @print(i32)");
+            return;
+        }
         appendLine("@.printstr = private unnamed_addr constant [4 x i8] c\"%d\\0A\\00\", align 1");
         appendLine("define void @print(i32 %i) {");
         appendLine("    %temp = call i32 (i8*, ...) "
@@ -735,7 +828,12 @@ public class PrettyPrinter implements
         append(s.getVar() + " = alloca " + s.getType());
     }
 
-    public Map<Element, SourcePosition> getSourcePositions() {
-        return sourcePositions;
+    /**
+     * The span of an element in the printed output, or {@link SourceText#NO_SPAN}
+     * if it was not printed or spans are not recorded.
+     */
+    public long getSourceSpan(Element e) {
+        Long span = sourceSpans.get(e);
+        return span == null ? SourceText.NO_SPAN : span;
     }
 }
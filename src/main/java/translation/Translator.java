@@ -1,15 +1,18 @@
 package translation;
 
 import analysis.ArrayType;
+import analysis.CompilationContext;
 import com.sun.jdi.ClassType;
+import frontend.AstPrinter;
+import frontend.SourceText;
 import minillvm.ast.*;
 import notquitejava.ast.*;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import static frontend.AstPrinter.print;
 import static minillvm.ast.Ast.*;
 
 
@@ -27,20 +30,38 @@ public class Translator {
     private final Map<NQJVarDecl, TemporaryVar> localVarLocation = new HashMap<>();
     private final Map<analysis.Type, Type> translatedType = new HashMap<>();
     private final Map<Type, TypeStruct> arrayStruct = new HashMap<>();
-    private final Map<Type, Proc> newArrayFuncForType = new HashMap<>();
+    private final Map<Type, Proc> newArrayFuncForType = new LinkedHashMap<>();
 
     private final Map<Type,TypeStruct> classStruct = new HashMap<>();
 
-    public static final Map<String,Map<NQJFunctionDecl,Proc>> vTable = new HashMap<>();
+    private final Map<String,Map<NQJFunctionDecl,Proc>> vTable;
     private final Map<NQJFunctionDecl, Proc> methodImpl = new HashMap<>();
     private final Map<NQJVarDecl,TemporaryVar> classVariables = new HashMap<>();
 
+    private boolean emitComments = true;
+
     // mutable state
     private Proc currentProcedure;
     private BasicBlock currentBlock;
 
     public Translator(NQJProgram javaProg) {
+        this(javaProg, new CompilationContext());
+    }
+
+    /**
+     * Creates a translator which keeps its class tables in the given compilation context.
+     */
+    public Translator(NQJProgram javaProg, CompilationContext context) {
         this.javaProg = javaProg;
+        this.vTable = context.getVTable();
+    }
+
+    /**
+     * Selects whether the start and end of every statement is marked with a comment
+     * in the generated code. Enabled by default.
+     */
+    public void setEmitComments(boolean emitComments) {
+        this.emitComments = emitComments;
     }
 
     /**
@@ -291,25 +312,39 @@ public class Translator {
     }
 
     void translateStmt(NQJStatement s) {
-        addInstruction(CommentInstr(sourceLine(s) + " start statement : " + printFirstline(s)));
+        if (!emitComments) {
+            s.match(stmtTranslator);
+            return;
+        }
+        String firstLine = firstLine(s);
+        addInstruction(CommentInstr(sourceLine(s) + " start statement : " + firstLine));
         s.match(stmtTranslator);
-        addInstruction(CommentInstr(sourceLine(s) + " end statement: " + printFirstline(s)));
+        addInstruction(CommentInstr(sourceLine(s) + " end statement: " + firstLine));
     }
 
     int sourceLine(NQJElement e) {
+        SourceText text = javaProg.getSourceText();
+        if (text == null) {
+            return 0;
+        }
         while (e != null) {
-            if (e.getSourcePosition() != null) {
-                return e.getSourcePosition().getLine();
+            if (e.getSourceSpan() != SourceText.NO_SPAN) {
+                return text.line(SourceText.start(e.getSourceSpan()));
             }
             e = e.getParent();
         }
         return 0;
     }
 
-    private String printFirstline(NQJStatement s) {
-        String str = print(s);
-        str = str.replaceAll("\n.*", "");
-        return str;
+    /**
+     * The first line of a statement, taken from the source text if the statement has a span.
+     */
+    private String firstLine(NQJStatement s) {
+        SourceText text = javaProg.getSourceText();
+        if (text == null || s.getSourceSpan() == SourceText.NO_SPAN) {
+            return AstPrinter.printFirstLine(s);
+        }
+        return text.firstLine(s.getSourceSpan());
     }
 
     BasicBlock newBasicBlock(String name) {
@@ -0,0 +1,192 @@
+package notquitejava.analysis;
+
+import analysis.Analysis;
+import analysis.ClassHierarchy;
+import analysis.NameTable;
+import analysis.Type;
+import analysis.TypeError;
+import frontend.NQJFrontend;
+import frontend.ProgramGenerator;
+import notquitejava.ast.NQJProgram;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the class hierarchy index and the inheritance rules built on it.
+ */
+public class ClassHierarchyTest {
+
+	private static final String MAIN = "int main() {\n  return 0;\n}\n";
+
+	private Analysis check(String source) throws Exception {
+		NQJFrontend frontend = new NQJFrontend();
+		NQJProgram program = frontend.parseString(source);
+		assertEquals(Collections.emptyList(), frontend.getSyntaxErrors());
+		Analysis analysis = new Analysis(program);
+		analysis.check();
+		return analysis;
+	}
+
+	private List<String> errors(Analysis analysis) {
+		return analysis.getTypeErrors().stream()
+				.map(TypeError::getMessage)
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testCycle() throws Exception {
+		Analysis analysis = check(MAIN
+				+ "class D extends A {}\n"
+				+ "class A extends B {}\n"
+				+ "class B extends C {}\n"
+				+ "class C extends A {}\n"
+				+ "class E extends E {}\n");
+		assertEquals(Arrays.asList(
+				"There exist a cyclic dependency with the class A",
+				"There exist a cyclic dependency with the class E"), errors(analysis));
+		ClassHierarchy hierarchy = analysis.getContext().getClassHierarchy();
+		assertEquals(Arrays.asList(Arrays.asList("A", "B", "C"), Arrays.asList("E")),
+				hierarchy.getCycles());
+		assertTrue(hierarchy.isCyclic("A"));
+		assertTrue(!hierarchy.isCyclic("D"));
+		assertEquals(Collections.emptyList(), hierarchy.getTopologicalOrder());
+	}
+
+	@Test
+	public void testTopologicalOrder() throws Exception {
+		Analysis analysis = check(MAIN
+				+ "class C extends B {}\n"
+				+ "class B extends A {}\n"
+				+ "class D extends A {}\n"
+				+ "class A {}\n");
+		ClassHierarchy hierarchy = analysis.getContext().getClassHierarchy();
+		assertEquals(Arrays.asList("A", "B", "D", "C"), hierarchy.getTopologicalOrder());
+		assertEquals(Arrays.asList("B", "D"), hierarchy.getChildren("A"));
+		assertEquals(Collections.emptyList(), hierarchy.getChildren("C"));
+		assertEquals(2, hierarchy.getSuperClasses("C").size());
+	}
+
+	@Test
+	public void testMembersInheritedBeforeSuperClassIsDeclared() throws Exception {
+		Analysis analysis = check("int main() {\n"
+				+ "  printInt(new C().get());\n"
+				+ "  return 0;\n"
+				+ "}\n"
+				+ "class C extends B {\n"
+				+ "  int get() {\n"
+				+ "    x = 1;\n"
+				+ "    return this.inc(x);\n"
+				+ "  }\n"
+				+ "}\n"
+				+ "class B extends A {}\n"
+				+ "class A {\n"
+				+ "  int x;\n"
+				+ "  int inc(int y) {\n"
+				+ "    return y + 1;\n"
+				+ "  }\n"
+				+ "}\n");
+		assertEquals(Collections.emptyList(), errors(analysis));
+	}
+
+	@Test
+	public void testOverridingMethodOfIndirectSuperClass() throws Exception {
+		Analysis analysis = check(MAIN
+				+ "class A {\n"
+				+ "  int m(int x) {\n"
+				+ "    return x;\n"
+				+ "  }\n"
+				+ "}\n"
+				+ "class B extends A {}\n"
+				+ "class C extends B {\n"
+				+ "  int m(boolean x) {\n"
+				+ "    return 0;\n"
+				+ "  }\n"
+				+ "}\n");
+		assertEquals(Collections.singletonList(
+				"m function signature is not matching with parent class"), errors(analysis));
+	}
+
+	@Test
+	public void testOverridingErrorsReportedOnce() throws Exception {
+		Analysis analysis = check(MAIN
+				+ "class A {\n"
+				+ "  int m(int x) {\n"
+				+ "    return x;\n"
+				+ "  }\n"
+				+ "  int n(int x) {\n"
+				+ "    return x;\n"
+				+ "  }\n"
+				+ "}\n"
+				+ "class B extends A {\n"
+				+ "  int m(boolean x) {\n"
+				+ "    return 0;\n"
+				+ "  }\n"
+				+ "  int n(int x) {\n"
+				+ "    return x;\n"
+				+ "  }\n"
+				+ "}\n"
+				+ "class C extends A {\n"
+				+ "  int n(int x, int y) {\n"
+				+ "    return x;\n"
+				+ "  }\n"
+				+ "}\n");
+		// one error per mismatching method, not one per subclass of A and not for B.n
+		assertEquals(Arrays.asList(
+				"Error in line 13:3: m function signature is not matching with parent class",
+				"Error in line 21:3: n function signature is not matching with parent class"),
+				analysis.getTypeErrors().stream()
+						.map(TypeError::toString)
+						.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testSubtypes() throws Exception {
+		Analysis analysis = check("int main() {\n"
+				+ "  A a;\n"
+				+ "  B b;\n"
+				+ "  D d;\n"
+				+ "  a = new C();\n"
+				+ "  b = new C();\n"
+				+ "  d = new C();\n"
+				+ "  b = new A();\n"
+				+ "  return 0;\n"
+				+ "}\n"
+				+ "class C extends B {}\n"
+				+ "class B extends A {}\n"
+				+ "class D extends A {}\n"
+				+ "class A {}\n");
+		assertEquals(Arrays.asList(
+				"Cannot assign value of type C to D.",
+				"Cannot assign value of type A to B."), errors(analysis));
+	}
+
+	@Test
+	public void testTypesAreInterned() throws Exception {
+		Analysis analysis = check(MAIN + "class A {}\n");
+		NameTable names = analysis.getNameTable();
+		assertSame(names.getClassType("A"), names.getClassType("A"));
+		assertSame(names.getArrayType(Type.INT), names.getArrayType(Type.INT));
+		assertSame(names.getArrayType(names.getClassType("A")),
+				names.getArrayType(names.getClassType("A")));
+	}
+
+	@Test(timeout = 60_000)
+	public void testManyClasses() throws Exception {
+		ProgramGenerator generator = new ProgramGenerator();
+		generator.setClasses(10_000);
+		generator.setInheritanceDepth(100);
+		generator.setStatementsPerMethod(1);
+		Analysis analysis = check(generator.generateSource());
+		assertEquals(Collections.emptyList(), errors(analysis));
+		assertEquals(10_000, analysis.getContext().getClassHierarchy()
+				.getTopologicalOrder().size());
+	}
+}
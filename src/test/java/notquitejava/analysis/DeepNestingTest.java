@@ -0,0 +1,57 @@
+package notquitejava.analysis;
+
+import analysis.Analysis;
+import frontend.CompilerThread;
+import frontend.NQJFrontend;
+import frontend.ProgramGenerator;
+import frontend.SourceText;
+import notquitejava.ast.NQJProgram;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Parses and checks generated programs nested 100000 levels deep.
+ */
+public class DeepNestingTest {
+
+	private static final int DEPTH = 100_000;
+
+	private void assertChecks(String source, boolean fastParser) throws Exception {
+		CompilerThread.call(() -> {
+			NQJFrontend frontend = new NQJFrontend();
+			frontend.setUseFastParser(fastParser);
+			frontend.setUseFastLexer(fastParser);
+			NQJProgram program = frontend.parse(new SourceText("Deep.java", source));
+			assertEquals(Collections.emptyList(), frontend.getSyntaxErrors());
+			assertNotNull(program);
+			Analysis analysis = new Analysis(program);
+			analysis.check();
+			assertEquals(Collections.emptyList(), analysis.getTypeErrors());
+			return null;
+		});
+	}
+
+	@Test
+	public void testNestedStatements() throws Exception {
+		assertChecks(ProgramGenerator.nestedSource(DEPTH), false);
+	}
+
+	@Test
+	public void testNestedStatementsFastParser() throws Exception {
+		assertChecks(ProgramGenerator.nestedSource(DEPTH), true);
+	}
+
+	@Test
+	public void testOperatorChain() throws Exception {
+		assertChecks(ProgramGenerator.operatorChainSource(DEPTH), false);
+	}
+
+	@Test
+	public void testOperatorChainFastParser() throws Exception {
+		assertChecks(ProgramGenerator.operatorChainSource(DEPTH), true);
+	}
+}
@@ -0,0 +1,132 @@
+package notquitejava.analysis;
+
+import analysis.IncrementalAnalysis;
+import analysis.TypeError;
+import frontend.NQJFrontend;
+import frontend.SourceText;
+import frontend.TextEdit;
+import notquitejava.ast.NQJProgram;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Edits a program and checks that only the bodies affected by an edit are checked again.
+ * Every check is verified against a check of the whole program.
+ */
+public class IncrementalAnalysisTest {
+
+	private static final String SOURCE = "int main() {\n"
+			+ "  printInt(f(1));\n"
+			+ "  return 0;\n"
+			+ "}\n"
+			+ "int f(int x) {\n"
+			+ "  return x + 1;\n"
+			+ "}\n"
+			+ "class A {\n"
+			+ "  int v;\n"
+			+ "  int get() {\n"
+			+ "    return v;\n"
+			+ "  }\n"
+			+ "}\n"
+			+ "class B extends A {\n"
+			+ "  int twice() {\n"
+			+ "    return this.get() + v;\n"
+			+ "  }\n"
+			+ "}\n"
+			+ "int g() {\n"
+			+ "  boolean b;\n"
+			+ "  b = 1;\n"
+			+ "  return 0;\n"
+			+ "}\n";
+
+	private final NQJFrontend frontend = new NQJFrontend();
+	private final IncrementalAnalysis analysis = new IncrementalAnalysis();
+	private NQJProgram program;
+
+	@Before
+	public void setUp() throws Exception {
+		analysis.setVerify(true);
+		frontend.setUseFastParser(true);
+		frontend.setUseFastLexer(true);
+		program = frontend.parse(new SourceText("test", SOURCE));
+		assertEquals(Collections.emptyList(), frontend.getSyntaxErrors());
+		assertEquals(List.of("Error in line 21:7: Cannot assign value of type int to boolean."),
+				check());
+		assertChecked(5, 0);
+	}
+
+	private List<String> check() {
+		return analysis.check(program).stream()
+				.map(TypeError::toString)
+				.collect(Collectors.toList());
+	}
+
+	private void edit(String old, String replacement) throws Exception {
+		SourceText text = program.getSourceText();
+		String content = new String(text.getChars(), 0, text.getLength());
+		NQJProgram edited = frontend.reparse(program,
+				new TextEdit(content.indexOf(old), old.length(), replacement));
+		assertEquals(Collections.emptyList(), frontend.getSyntaxErrors());
+		assertSame(program, edited);
+	}
+
+	private void assertChecked(int checked, int reused) {
+		assertEquals(checked, analysis.getCheckedBodies());
+		assertEquals(reused, analysis.getReusedBodies());
+	}
+
+	@Test
+	public void testUnchanged() {
+		check();
+		assertChecked(0, 5);
+	}
+
+	@Test
+	public void testCalledFunctionChanged() throws Exception {
+		edit("x + 1", "x + 2");
+		check();
+		// f and its caller main
+		assertChecked(2, 3);
+	}
+
+	@Test
+	public void testSuperClassChanged() throws Exception {
+		edit("return v;", "return v + 0;");
+		check();
+		// A.get and B.twice, which inherits from A
+		assertChecked(2, 3);
+	}
+
+	@Test
+	public void testSignatureChanged() throws Exception {
+		edit("int f(int x)", "int f(boolean x)");
+		assertEquals(List.of(
+				"Error in line 2:14: Expected expression of type boolean but found int.",
+				"Error in line 6:10: Expected expression of type int but found boolean.",
+				"Error in line 21:7: Cannot assign value of type int to boolean."), check());
+		assertChecked(2, 3);
+	}
+
+	@Test
+	public void testReusedErrorsMove() throws Exception {
+		edit("  printInt(f(1));", "\n\n  printInt(f(1));");
+		assertEquals(List.of("Error in line 23:7: Cannot assign value of type int to boolean."),
+				check());
+		assertChecked(1, 4);
+	}
+
+	@Test
+	public void testClassAdded() throws Exception {
+		edit("class B extends A", "class C {}\nclass B extends A");
+		check();
+		// the class types change with the hierarchy
+		assertChecked(5, 0);
+	}
+}
@@ -0,0 +1,106 @@
+package notquitejava.analysis;
+
+import analysis.Analysis;
+import analysis.TypeError;
+import frontend.CompilerThread;
+import frontend.NQJFrontend;
+import frontend.ProgramGenerator;
+import frontend.SourceText;
+import notquitejava.ast.NQJProgram;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that checking method bodies in parallel reports the same errors
+ * in the same order as the sequential check.
+ */
+public class ParallelCheckTest {
+
+	private static List<String> errors(String source, int threads) throws Exception {
+		NQJFrontend frontend = new NQJFrontend();
+		NQJProgram program = frontend.parse(new SourceText("test", source));
+		assertEquals(Collections.emptyList(), frontend.getSyntaxErrors());
+		Analysis analysis = new Analysis(program);
+		analysis.setCheckThreads(threads);
+		analysis.check();
+		return analysis.getTypeErrors().stream()
+				.map(TypeError::toString)
+				.collect(Collectors.toList());
+	}
+
+	private static void assertSameErrors(String source) throws Exception {
+		assertEquals(errors(source, 1), errors(source, 4));
+	}
+
+	@Test
+	public void testTestdata() throws Exception {
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(Paths.get("testdata"))) {
+			files = paths.filter(p -> p.toString().endsWith(".java")).sorted()
+					.collect(Collectors.toList());
+		}
+		assertTrue(!files.isEmpty());
+		for (Path file : files) {
+			assertSameErrors(new String(Files.readAllBytes(file), "UTF-8"));
+		}
+	}
+
+	@Test
+	public void testErrorsInSourceOrder() throws Exception {
+		String source = "int main() {\n"
+				+ "  return true;\n"
+				+ "}\n"
+				+ "class A extends Missing {\n"
+				+ "  int m() {\n"
+				+ "    return this.n(1);\n"
+				+ "  }\n"
+				+ "  boolean n() {\n"
+				+ "    int x;\n"
+				+ "    x = false;\n"
+				+ "    return x;\n"
+				+ "  }\n"
+				+ "}\n"
+				+ "class B extends A {\n"
+				+ "  int f;\n"
+				+ "  int m() {\n"
+				+ "    f = new A();\n"
+				+ "    return g();\n"
+				+ "  }\n"
+				+ "}\n"
+				+ "int g() {\n"
+				+ "  return undefined;\n"
+				+ "}\n";
+		List<String> errors = errors(source, 1);
+		assertTrue(errors.size() >= 5);
+		assertEquals(errors, errors(source, 4));
+	}
+
+	@Test
+	public void testGeneratedProgram() throws Exception {
+		ProgramGenerator generator = new ProgramGenerator();
+		generator.setClasses(200);
+		generator.setInheritanceDepth(10);
+		String source = generator.generateSource();
+		assertEquals(Collections.emptyList(), errors(source, 4));
+	}
+
+	@Test
+	public void testDeeplyNestedBody() throws Exception {
+		String source = ProgramGenerator.nestedSource(100_000);
+		// the body is checked by a pool thread, which needs the large stack as well
+		CompilerThread.call(() -> {
+			assertEquals(Collections.emptyList(), errors(source, 4));
+			return null;
+		});
+	}
+}
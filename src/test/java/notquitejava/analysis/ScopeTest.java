@@ -0,0 +1,70 @@
+package notquitejava.analysis;
+
+import analysis.Analysis;
+import analysis.TypeError;
+import frontend.NQJFrontend;
+import frontend.ProgramGenerator;
+import notquitejava.ast.NQJProgram;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the declaration and shadowing rules of local variables.
+ */
+public class ScopeTest {
+
+	private List<String> errors(String source) throws Exception {
+		NQJFrontend frontend = new NQJFrontend();
+		NQJProgram program = frontend.parseString(source);
+		assertEquals(Collections.emptyList(), frontend.getSyntaxErrors());
+		Analysis analysis = new Analysis(program);
+		analysis.check();
+		return analysis.getTypeErrors().stream()
+				.map(TypeError::getMessage)
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testShadowingOuterBlock() throws Exception {
+		assertEquals(Collections.emptyList(), errors("int main() {\n"
+				+ "  int x;\n"
+				+ "  x = 1;\n"
+				+ "  {\n"
+				+ "    boolean x;\n"
+				+ "    x = true;\n"
+				+ "  }\n"
+				+ "  x = x + 1;\n"
+				+ "  return x;\n"
+				+ "}\n"));
+	}
+
+	@Test
+	public void testRedeclaration() throws Exception {
+		assertEquals(Arrays.asList(
+				"A variable with name p is already defined.",
+				"A variable with name y is already defined.",
+				"A variable with name p is already defined."), errors("int main() {\n"
+				+ "  return 0;\n"
+				+ "}\n"
+				+ "int f(int p) {\n"
+				+ "  int p;\n"
+				+ "  int y;\n"
+				+ "  boolean y;\n"
+				+ "  {\n"
+				+ "    int p;\n"
+				+ "  }\n"
+				+ "  return p;\n"
+				+ "}\n"));
+	}
+
+	@Test(timeout = 60_000)
+	public void testManyLocalsInDeepBlocks() throws Exception {
+		assertEquals(Collections.emptyList(), errors(ProgramGenerator.localsSource(4000, 1000)));
+	}
+}
@@ -0,0 +1,133 @@
+package notquitejava.lsp;
+
+import lsp.Json;
+import lsp.LanguageServer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the language server on a scripted session and checks the published diagnostics.
+ */
+public class LanguageServerTest {
+
+	private static final String URI = "file:///test.java";
+
+	private final StringBuilder input = new StringBuilder();
+	private int nextId = 1;
+
+	private void send(String method, String params, boolean request) {
+		String content = "{\"jsonrpc\":\"2.0\","
+				+ (request ? "\"id\":" + nextId++ + "," : "")
+				+ "\"method\":\"" + method + "\",\"params\":" + params + "}";
+		input.append("Content-Length: ")
+				.append(content.getBytes(StandardCharsets.UTF_8).length)
+				.append("\r\n\r\n")
+				.append(content);
+	}
+
+	private static String change(int line, int character, int endLine, int endCharacter,
+			String text) {
+		return "{\"range\":{\"start\":{\"line\":" + line + ",\"character\":" + character + "},"
+				+ "\"end\":{\"line\":" + endLine + ",\"character\":" + endCharacter + "}},"
+				+ "\"text\":" + Json.write(text) + "}";
+	}
+
+	private void didChange(int version, String... changes) {
+		send("textDocument/didChange", "{\"textDocument\":{\"uri\":\"" + URI + "\",\"version\":"
+				+ version + "},\"contentChanges\":[" + String.join(",", changes) + "]}", false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Map<String, Object>> run() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LanguageServer server = new LanguageServer(
+				new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)),
+				out, new PrintStream(new ByteArrayOutputStream()));
+		assertEquals(0, server.serve());
+		List<Map<String, Object>> messages = new ArrayList<>();
+		String output = out.toString(StandardCharsets.UTF_8);
+		int pos = 0;
+		while (pos < output.length()) {
+			int headerEnd = output.indexOf("\r\n\r\n", pos);
+			int length = Integer.parseInt(output.substring(pos, headerEnd).split(": ")[1]);
+			int start = headerEnd + 4;
+			messages.add((Map<String, Object>) Json.parse(output.substring(start, start + length)));
+			pos = start + length;
+		}
+		return messages;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String> diagnostics(Map<String, Object> message) {
+		assertEquals("textDocument/publishDiagnostics", message.get("method"));
+		Map<String, Object> params = (Map<String, Object>) message.get("params");
+		List<String> result = new ArrayList<>();
+		for (Object d : (List<Object>) params.get("diagnostics")) {
+			Map<String, Object> diagnostic = (Map<String, Object>) d;
+			Map<String, Object> start = (Map<String, Object>)
+					((Map<String, Object>) diagnostic.get("range")).get("start");
+			result.add(start.get("line") + ":" + start.get("character") + " "
+					+ diagnostic.get("message"));
+		}
+		return result;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSession() throws Exception {
+		String text = "int main() {\n  int x;\n  x = 1;\n  return x;\n}\n";
+		send("initialize", "{}", true);
+		send("initialized", "{}", false);
+		send("textDocument/didOpen", "{\"textDocument\":{\"uri\":\"" + URI + "\","
+				+ "\"languageId\":\"nqj\",\"version\":1,\"text\":" + Json.write(text) + "}}", false);
+		// x = true; is a type error
+		didChange(2, change(2, 6, 2, 7, "true"));
+		// a syntax error
+		didChange(3, change(2, 10, 2, 11, ""));
+		// fixed again, the second change refers to the text after the first one
+		didChange(4, change(2, 10, 2, 10, ";"), change(2, 6, 2, 10, "2"));
+		send("nqj/metrics", "{}", true);
+		send("unknown/request", "{}", true);
+		send("shutdown", "null", true);
+		send("exit", "null", false);
+
+		List<Map<String, Object>> messages = run();
+		assertEquals(8, messages.size());
+		Map<String, Object> initialize = (Map<String, Object>) messages.get(0).get("result");
+		Map<String, Object> capabilities = (Map<String, Object>) initialize.get("capabilities");
+		assertEquals(2L, ((Map<String, Object>) capabilities.get("textDocumentSync")).get("change"));
+
+		assertEquals(List.of(), diagnostics(messages.get(1)));
+		List<String> typeErrors = diagnostics(messages.get(2));
+		assertEquals(1, typeErrors.size());
+		assertTrue(typeErrors.get(0), typeErrors.get(0).startsWith("2:"));
+		List<String> syntaxErrors = diagnostics(messages.get(3));
+		assertTrue(syntaxErrors.toString(), !syntaxErrors.isEmpty());
+		assertEquals(List.of(), diagnostics(messages.get(4)));
+
+		Map<String, Object> metrics = (Map<String, Object>) messages.get(5).get("result");
+		assertEquals(3L, ((Map<String, Object>) metrics.get("textDocument/didChange")).get("count"));
+		Map<String, Object> error = (Map<String, Object>) messages.get(6).get("error");
+		assertEquals(-32601L, error.get("code"));
+		assertEquals(4L, messages.get(7).get("id"));
+		assertTrue(messages.get(7).containsKey("result"));
+	}
+
+	@Test
+	public void testJson() {
+		String json = "{\"a\":[1,-2.5,true,false,null],\"b\":\"x\\\"\\n\\u0041\",\"c\":{}}";
+		Object value = Json.parse(json);
+		assertEquals("{\"a\":[1,-2.5,true,false,null],\"b\":\"x\\\"\\nA\",\"c\":{}}",
+				Json.write(value));
+	}
+}
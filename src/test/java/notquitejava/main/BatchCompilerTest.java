@@ -0,0 +1,107 @@
+package notquitejava.main;
+
+import main.BatchCompiler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Expands the inputs of the batch compiler and checks where its outputs are written.
+ */
+public class BatchCompilerTest {
+
+	private static final String PROGRAM = "int main() {\n  printInt(42);\n  return 0;\n}\n";
+	private static final String ERRORS = "int main() {\n  return true;\n}\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path write(String file, String content) throws IOException {
+		Path path = folder.getRoot().toPath().resolve(file);
+		Files.createDirectories(path.getParent());
+		Files.write(path, content.getBytes("UTF-8"));
+		return path;
+	}
+
+	@Test
+	public void testExpandInputs() throws Exception {
+		Path a = write("src/a.java", PROGRAM);
+		Path b = write("src/sub/b.java", PROGRAM);
+		Path c = write("other/c.java", PROGRAM);
+		write("src/notes.txt", "");
+		Path root = folder.getRoot().toPath();
+
+		// directories contain their .java files, sorted
+		assertEquals(List.of(a, b), BatchCompiler.expandInputs(List.of(root + "/src")));
+		assertEquals(List.of(a, b), BatchCompiler.expandInputs(List.of(root + "/src/**.java")));
+		assertEquals(List.of(a), BatchCompiler.expandInputs(List.of(root + "/src/*.java")));
+
+		Path argfile = write("inputs.txt", "# comment\n\n" + c + "\n" + root + "/src/*.java\n");
+		assertEquals(List.of(c, a), BatchCompiler.expandInputs(List.of("@" + argfile)));
+		// inputs are distinct
+		assertEquals(List.of(c, a),
+				BatchCompiler.expandInputs(List.of("@" + argfile, a.toString())));
+	}
+
+	@Test
+	public void testReportIndependentOfThreads() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			write("src/p" + i + ".java", i % 3 == 0 ? ERRORS : PROGRAM);
+		}
+		List<Path> inputs = BatchCompiler.expandInputs(List.of(folder.getRoot() + "/src"));
+		Path out1 = folder.getRoot().toPath().resolve("out1");
+		Path out4 = folder.getRoot().toPath().resolve("out4");
+		String report = BatchCompiler.report(new BatchCompiler(inputs, out1, 1).compileAll());
+		assertTrue(report, report.endsWith("Compiled 20 programs, 13 succeeded, 7 failed.\n"));
+		assertEquals(report, BatchCompiler.report(new BatchCompiler(inputs, out4, 4).compileAll()));
+	}
+
+	@Test
+	public void testAbsoluteInputsKeepTheirDirectories() throws Exception {
+		Path first = write("a/x.java", PROGRAM);
+		Path second = write("b/x.java", PROGRAM);
+		Path out = folder.getRoot().toPath().resolve("out");
+		BatchCompiler compiler = new BatchCompiler(List.of(first, second), out, 2);
+		compiler.compileAll();
+		Path firstOut = compiler.outputFile(first);
+		Path secondOut = compiler.outputFile(second);
+		assertTrue(firstOut.startsWith(out));
+		assertTrue(secondOut.startsWith(out));
+		assertTrue(Files.isRegularFile(firstOut));
+		assertTrue(Files.isRegularFile(secondOut));
+	}
+
+	@Test
+	public void testParentDirectoriesStayInOutputDir() throws Exception {
+		Path file = write("x.java", PROGRAM);
+		Path relative = Paths.get("").toAbsolutePath().relativize(file);
+		assertTrue(relative.startsWith(".."));
+		Path out = folder.getRoot().toPath().resolve("out");
+		BatchCompiler compiler = new BatchCompiler(List.of(relative), out, 1);
+		compiler.compileAll();
+		Path target = compiler.outputFile(relative);
+		assertTrue(target.toString(), target.normalize().startsWith(out));
+		assertTrue(Files.isRegularFile(target));
+	}
+
+	@Test
+	public void testDuplicateOutputsRejected() {
+		Path out = folder.getRoot().toPath().resolve("out");
+		try {
+			new BatchCompiler(List.of(Paths.get("/q/x.java"), Paths.get("q/x.java")), out, 1);
+			fail("Both inputs are compiled to out/q/x.java.ll");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("x.java.ll"));
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package notquitejava.main;
+
+import main.CompileCache;
+import main.CompilerOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stores and fetches artifacts in a compile cache, from one and from several cache instances.
+ */
+public class CompileCacheTest {
+
+	private static final String SOURCE = "int main() {\n  return 0;\n}\n";
+	private static final String NAME = "prog";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path cacheDir() {
+		return folder.getRoot().toPath().resolve("cache");
+	}
+
+	/**
+	 * Writes the artifacts of a program, prog.ll and prog.o, with the given contents.
+	 */
+	private List<Path> artifacts(String dir, String content) throws IOException {
+		Path base = folder.getRoot().toPath().resolve(dir);
+		Files.createDirectories(base);
+		List<Path> artifacts = List.of(base.resolve("prog.ll"), base.resolve("prog.o"));
+		for (Path artifact : artifacts) {
+			Files.write(artifact, (content + " " + artifact.getFileName()).getBytes("UTF-8"));
+		}
+		return artifacts;
+	}
+
+	private static String read(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), "UTF-8");
+	}
+
+	private List<String> cachedFiles() throws IOException {
+		try (Stream<Path> files = Files.list(cacheDir())) {
+			return files.map(p -> p.getFileName().toString())
+					.filter(name -> !name.startsWith("."))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		CompileCache cache = new CompileCache(cacheDir(), 1L << 20);
+		String key = cache.key(SOURCE, new CompilerOptions());
+		List<Path> targets = artifacts("out", "old");
+		assertFalse(cache.fetch(key, NAME, targets));
+
+		cache.store(key, NAME, artifacts("build", "new"));
+		assertTrue(cache.fetch(key, NAME, targets));
+		assertEquals("new prog.ll", read(targets.get(0)));
+		assertEquals("new prog.o", read(targets.get(1)));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// an entry without all requested artifacts is a miss
+		List<Path> more = new ArrayList<>(targets);
+		more.add(targets.get(0).resolveSibling("prog"));
+		assertFalse(cache.fetch(key, NAME, more));
+	}
+
+	@Test
+	public void testArtifactsWithSameExtension() throws Exception {
+		CompileCache cache = new CompileCache(cacheDir(), 1L << 20);
+		String key = cache.key(SOURCE, new CompilerOptions());
+		String name = "prog.java";
+		Path build = folder.newFolder("build").toPath();
+		Path out = folder.newFolder("out").toPath();
+		List<String> files = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			files.add(name + "." + i + ".ll");
+			files.add(name + "." + i + ".o");
+		}
+		files.add(name + ".exe");
+		List<Path> artifacts = new ArrayList<>();
+		List<Path> targets = new ArrayList<>();
+		for (String file : files) {
+			artifacts.add(Files.write(build.resolve(file), file.getBytes("UTF-8")));
+			targets.add(out.resolve(file));
+		}
+
+		cache.store(key, name, artifacts);
+		assertEquals(files.size(), cachedFiles().size());
+		assertTrue(cache.fetch(key, name, targets));
+		// every module gets its own file back, not the last stored .ll or .o
+		for (int i = 0; i < files.size(); i++) {
+			assertEquals(files.get(i), read(targets.get(i)));
+		}
+	}
+
+	@Test
+	public void testKeys() {
+		CompilerOptions options = new CompilerOptions();
+		String key = CompileCache.key("1.0", SOURCE, options);
+		assertEquals(key, CompileCache.key("1.0", SOURCE, new CompilerOptions()));
+		assertNotEquals(key, CompileCache.key("1.0", SOURCE + "\n", options));
+		assertNotEquals(key, CompileCache.key("1.1", SOURCE, options));
+
+		CompilerOptions noComments = new CompilerOptions();
+		noComments.setEmitComments(false);
+		assertNotEquals(key, CompileCache.key("1.0", SOURCE, noComments));
+		CompilerOptions pipeline = new CompilerOptions();
+		pipeline.setPipeline(true);
+		assertNotEquals(key, CompileCache.key("1.0", SOURCE, pipeline));
+		// does not change the artifacts
+		CompilerOptions stats = new CompilerOptions();
+		stats.setPrintStats(true);
+		assertEquals(key, CompileCache.key("1.0", SOURCE, stats));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsedEntries() throws Exception {
+		List<Path> build = artifacts("build", "x");
+		long entrySize = Files.size(build.get(0)) + Files.size(build.get(1));
+		// room for two entries
+		CompileCache cache = new CompileCache(cacheDir(), 2 * entrySize + entrySize / 2);
+		CompilerOptions options = new CompilerOptions();
+		String a = cache.key("a", options);
+		String b = cache.key("b", options);
+		String c = cache.key("c", options);
+
+		cache.store(a, NAME, build);
+		Thread.sleep(50);
+		cache.store(b, NAME, build);
+		Thread.sleep(50);
+		assertTrue(cache.fetch(a, NAME, artifacts("out", "")));
+		Thread.sleep(50);
+		cache.store(c, NAME, build);
+
+		// b is evicted with all of its files
+		assertEquals(List.of(a + ".ll", a + ".o", c + ".ll", c + ".o").stream().sorted()
+				.collect(Collectors.toList()), cachedFiles());
+		assertFalse(cache.fetch(b, NAME, artifacts("out", "")));
+		assertTrue(cache.fetch(a, NAME, artifacts("out", "")));
+		assertTrue(cache.fetch(c, NAME, artifacts("out", "")));
+	}
+
+	@Test
+	public void testConcurrentInstances() throws Exception {
+		int keys = 10;
+		List<Path> sample = artifacts("sample", "key0");
+		long entrySize = Files.size(sample.get(0)) + Files.size(sample.get(1));
+		// two cache instances share the directory, which only holds about half of the entries
+		CompileCache[] caches = {
+			new CompileCache(cacheDir(), keys / 2 * entrySize),
+			new CompileCache(cacheDir(), keys / 2 * entrySize)
+		};
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> tasks = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				int thread = t;
+				tasks.add(pool.submit(() -> {
+					Random random = new Random(thread);
+					CompileCache cache = caches[thread % 2];
+					int hits = 0;
+					for (int i = 0; i < 200; i++) {
+						int k = random.nextInt(keys);
+						String key = CompileCache.key("1.0", "key" + k, new CompilerOptions());
+						if (random.nextBoolean()) {
+							cache.store(key, NAME, artifacts("build" + thread, "key" + k));
+						} else {
+							List<Path> targets = artifacts("out" + thread, "");
+							if (cache.fetch(key, NAME, targets)) {
+								hits++;
+								assertEquals("key" + k + " prog.ll", read(targets.get(0)));
+								assertEquals("key" + k + " prog.o", read(targets.get(1)));
+							}
+						}
+					}
+					return hits;
+				}));
+			}
+			int hits = 0;
+			for (Future<Integer> task : tasks) {
+				hits += task.get();
+			}
+			assertTrue(hits > 0);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		// only complete entries remain
+		List<String> files = cachedFiles();
+		for (String file : files) {
+			String key = file.substring(0, file.indexOf('.'));
+			assertTrue(files.toString(), files.contains(key + ".ll") && files.contains(key + ".o"));
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package notquitejava.main;
+
+import main.CompileClient;
+import main.CompileDaemon;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs a compile daemon on a loopback port and talks to it with the client.
+ */
+public class CompileDaemonTest {
+
+	private static final String PROGRAM = "int main() {\n  printInt(42);\n  return 0;\n}\n";
+
+	@Test(timeout = 60_000)
+	public void testRoundTrip() throws Exception {
+		// a single worker, so that an idle connection holding it would block every request
+		CompileDaemon daemon = new CompileDaemon(0, 1);
+		ExecutorService server = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> serving = server.submit(() -> {
+				daemon.serve();
+				return null;
+			});
+			try (CompileClient idle = new CompileClient(daemon.getPort());
+					CompileClient client = new CompileClient(daemon.getPort())) {
+				CompileClient.Result ok = client.compile("ok.java", PROGRAM);
+				assertEquals(CompileDaemon.STATUS_OK, ok.getStatus());
+				assertTrue(ok.getDiagnostics().isEmpty());
+				assertTrue(ok.getLlvmCode(), ok.getLlvmCode().contains("main"));
+
+				CompileClient.Result errors = client.compile("errors.java",
+						"int main() {\n  return true;\n}\n");
+				assertEquals(CompileDaemon.STATUS_ERRORS, errors.getStatus());
+				assertEquals(1, errors.getDiagnostics().size());
+				assertEquals("", errors.getLlvmCode());
+
+				String statistics = client.statistics();
+				assertTrue(statistics, statistics.startsWith("requests: 2, failed: 0"));
+				assertTrue(client.shutdownDaemon().startsWith("requests: 2"));
+			}
+			// the idle connection is closed, so the daemon stops
+			serving.get(30, TimeUnit.SECONDS);
+			assertFalse(daemon.statistics().isEmpty());
+		} finally {
+			server.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void testLongDiagnostic() throws Exception {
+		String name = "v".repeat(70_000);
+		CompileDaemon daemon = new CompileDaemon(0, 1);
+		ExecutorService server = Executors.newSingleThreadExecutor();
+		try {
+			server.submit(() -> {
+				daemon.serve();
+				return null;
+			});
+			try (CompileClient client = new CompileClient(daemon.getPort())) {
+				// longer than the 64KB of writeUTF
+				CompileClient.Result result = client.compile("long.java",
+						"int main() {\n  return " + name + ";\n}\n");
+				assertEquals(CompileDaemon.STATUS_ERRORS, result.getStatus());
+				assertTrue(result.getDiagnostics().get(0).contains(name));
+				assertEquals(CompileDaemon.STATUS_OK, client.compile("ok.java", PROGRAM).getStatus());
+				client.shutdownDaemon();
+			}
+		} finally {
+			server.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void testInvalidSourceLength() throws Exception {
+		CompileDaemon daemon = new CompileDaemon(0, 1);
+		ExecutorService server = Executors.newSingleThreadExecutor();
+		try {
+			server.submit(() -> {
+				daemon.serve();
+				return null;
+			});
+			for (int length : new int[]{-1, CompileDaemon.MAX_SOURCE_LENGTH + 1}) {
+				try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+						DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+						DataInputStream in = new DataInputStream(socket.getInputStream())) {
+					out.writeInt(CompileDaemon.COMPILE);
+					out.writeUTF("bad.java");
+					out.writeInt(length);
+					out.flush();
+					assertEquals(CompileDaemon.STATUS_FAILURE, in.readInt());
+					assertEquals(1, in.readInt());
+					byte[] diagnostic = new byte[in.readInt()];
+					in.readFully(diagnostic);
+					assertTrue(new String(diagnostic, "UTF-8").contains("Invalid source length"));
+					assertEquals(0, in.readInt());
+					// the connection is closed after the answer
+					assertEquals(-1, in.read());
+				}
+			}
+			try (CompileClient client = new CompileClient(daemon.getPort())) {
+				assertTrue(client.statistics().startsWith("requests: 0, failed: 2"));
+				client.shutdownDaemon();
+			}
+		} finally {
+			server.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void testShutdownClosesIdleConnections() throws Exception {
+		CompileDaemon daemon = new CompileDaemon(0, 2);
+		ExecutorService server = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> serving = server.submit(() -> {
+				daemon.serve();
+				return null;
+			});
+			CompileClient idle = new CompileClient(daemon.getPort());
+			try (CompileClient client = new CompileClient(daemon.getPort())) {
+				client.statistics();
+			}
+			daemon.shutdown();
+			serving.get(30, TimeUnit.SECONDS);
+			try {
+				idle.statistics();
+				throw new AssertionError("The idle connection is still open");
+			} catch (IOException e) {
+				// closed by the daemon
+			} finally {
+				idle.close();
+			}
+		} finally {
+			server.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package notquitejava.main;
+
+import frontend.CompilerThread;
+import main.PhaseStatistics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the costs of pool tasks are part of their phase and that the total wall time
+ * is measured once.
+ */
+public class PhaseStatisticsTest {
+
+	private static final int ALLOCATION = 8 << 20;
+
+	private static long jsonValue(String json, String key) {
+		Matcher m = Pattern.compile("\"" + key + "\": (-?\\d+)").matcher(json);
+		assertTrue(json, m.find());
+		return Long.parseLong(m.group(1));
+	}
+
+	@Test
+	public void testPoolAllocationsCounted() throws Exception {
+		PhaseStatistics statistics = new PhaseStatistics();
+		statistics.time("pool", () -> {
+			ExecutorService pool = CompilerThread.newPool(2, 1 << 20);
+			try {
+				List<Future<Integer>> tasks = new ArrayList<>();
+				for (int i = 0; i < 4; i++) {
+					tasks.add(pool.submit(() -> new byte[ALLOCATION].length));
+				}
+				for (Future<Integer> task : tasks) {
+					CompilerThread.join(task);
+				}
+			} finally {
+				pool.shutdown();
+			}
+			return null;
+		});
+		long allocated = jsonValue(statistics.toJson(), "allocatedBytes");
+		if (allocated >= 0) {
+			assertTrue("allocated " + allocated, allocated >= 4L * ALLOCATION);
+		}
+	}
+
+	@Test
+	public void testTotalOfOverlappingPhases() throws Exception {
+		PhaseStatistics statistics = new PhaseStatistics();
+		Thread other = new Thread(() -> {
+			try {
+				statistics.time("parallel", () -> {
+					Thread.sleep(200);
+					return null;
+				});
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		long start = System.nanoTime();
+		other.start();
+		statistics.time("main", () -> {
+			Thread.sleep(200);
+			return null;
+		});
+		other.join();
+		statistics.finish();
+		long elapsed = System.nanoTime() - start;
+		String json = statistics.toJson();
+		// the phases overlap, their sum is larger than the total
+		assertTrue(json, jsonValue(json, "totalWallNanos") <= elapsed + 50_000_000L);
+		assertTrue(json, jsonValue(json, "totalWallNanos") < 350_000_000L);
+	}
+}
@@ -0,0 +1,125 @@
+package notquitejava.syntax;
+
+import frontend.BinaryAstReader;
+import frontend.BinaryAstWriter;
+import frontend.CompilerThread;
+import frontend.NQJFrontend;
+import frontend.ProgramGenerator;
+import frontend.SourceText;
+import notquitejava.ast.NQJProgram;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes parsed programs in the binary AST format and checks that reading them
+ * gives the same trees and source spans.
+ */
+public class BinaryAstTest {
+
+	private static void assertRoundTrip(String source) throws Exception {
+		NQJFrontend frontend = new NQJFrontend();
+		SourceText text = new SourceText("test", source);
+		NQJProgram program = frontend.parse(text);
+		if (program == null) {
+			return;
+		}
+		byte[] data = BinaryAstWriter.toBytes(program);
+		NQJProgram read = BinaryAstReader.fromBytes(data, text);
+		assertEquals(source, program.toString(), read.toString());
+		assertEquals(source, FastParserTest.describe(program), FastParserTest.describe(read));
+		assertSame(text, read.getSourceText());
+		assertArrayEquals(source, data, BinaryAstWriter.toBytes(read));
+	}
+
+	private static void roundTripDirectory(File dir) throws Exception {
+		for (File f : Objects.requireNonNull(dir.listFiles())) {
+			if (f.isDirectory()) {
+				roundTripDirectory(f);
+			} else {
+				assertRoundTrip(Files.readString(f.toPath()));
+			}
+		}
+	}
+
+	@Test
+	public void testTestdata() throws Exception {
+		roundTripDirectory(new File("testdata"));
+	}
+
+	@Test
+	public void testGeneratedProgram() throws Exception {
+		assertRoundTrip(new ProgramGenerator().generateSource());
+	}
+
+	@Test
+	public void testValues() throws Exception {
+		assertRoundTrip("");
+		assertRoundTrip("int main() { x = -2147483647 - 1; y = 2147483647; b = true && !false;"
+				+ " return 0; }");
+	}
+
+	@Test
+	public void testInvalidInput() throws Exception {
+		byte[] data = BinaryAstWriter.toBytes(new NQJFrontend().parseString(
+				"class A { int x; } int main() { return new A().x; }"));
+		for (int length = 0; length < data.length; length++) {
+			try {
+				BinaryAstReader.fromBytes(Arrays.copyOf(data, length), null);
+				fail("truncated input was accepted");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+		data[4] = 2;
+		try {
+			BinaryAstReader.fromBytes(data, null);
+			fail("wrong version was accepted");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void testInvalidStringLength() throws Exception {
+		// magic, version, a VarUse with a new string of length 2^31 - 1 and only one char
+		byte[] data = {'N', 'Q', 'J', 'A', 1, 18, 0, -1, -1, -1, -1, 7, 'x'};
+		try {
+			BinaryAstReader.fromBytes(data, null);
+			fail("string length beyond the input was accepted");
+		} catch (IOException e) {
+			assertEquals("Invalid string length 2147483647", e.getMessage());
+		}
+		// the length of the stream is not known, the string ends with the input
+		try {
+			new BinaryAstReader(new ByteArrayInputStream(data)).read(null);
+			fail("truncated string was accepted");
+		} catch (IOException e) {
+			assertEquals("Unexpected end of binary AST", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDeepNesting() throws Exception {
+		CompilerThread.call(() -> {
+			NQJFrontend frontend = new NQJFrontend();
+			frontend.setUseFastParser(true);
+			frontend.setUseFastLexer(true);
+			SourceText text = new SourceText("Deep.java", ProgramGenerator.nestedSource(100_000));
+			NQJProgram program = frontend.parse(text);
+			byte[] data = BinaryAstWriter.toBytes(program);
+			assertArrayEquals(data, BinaryAstWriter.toBytes(BinaryAstReader.fromBytes(data, text)));
+			return null;
+		});
+	}
+}
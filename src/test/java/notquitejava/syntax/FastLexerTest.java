@@ -0,0 +1,100 @@
+package notquitejava.syntax;
+
+import frontend.FastLexer;
+import frontend.ProgramGenerator;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the tokens of the hand-written {@link FastLexer} with the tokens of the
+ * generated {@link Lexer}, including values and source offsets.
+ */
+public class FastLexerTest {
+
+	private static List<String> tokens(Scanner scanner) throws Exception {
+		List<String> result = new ArrayList<>();
+		while (true) {
+			Symbol s = scanner.next_token();
+			result.add(NotQuiteJavaParserSym.terminalNames[s.sym] + "(" + s.value + ") "
+					+ s.left + "-" + s.right);
+			if (s.sym == NotQuiteJavaParserSym.EOF) {
+				return result;
+			}
+		}
+	}
+
+	private static void assertSameTokens(String input) throws Exception {
+		List<String> expected = tokens(new Lexer(new StringReader(input)));
+		List<String> actual = tokens(new FastLexer(new StringReader(input)));
+		assertEquals(input, expected, actual);
+	}
+
+	@Test
+	public void testTestdata() throws Exception {
+		for (String dir : new String[]{"testdata/translation/classes", "testdata/typechecker/ok",
+				"testdata/typechecker/error"}) {
+			for (File f : Objects.requireNonNull(new File(dir).listFiles(File::isFile))) {
+				assertSameTokens(Files.readString(f.toPath()));
+			}
+		}
+	}
+
+	@Test
+	public void testGeneratedProgram() throws Exception {
+		assertSameTokens(new ProgramGenerator().generateSource());
+	}
+
+	@Test
+	public void testKeywordsAndIdentifiers() throws Exception {
+		assertSameTokens("int integer in i if iff length lengths null nullable true truex"
+				+ " falsey _x x_1 X2 synchronized strictfp instanceof a1b2c3");
+	}
+
+	@Test
+	public void testNumbers() throws Exception {
+		assertSameTokens("0 007 10 0x1F 123abc 2147483648");
+	}
+
+	@Test
+	public void testOperators() throws Exception {
+		assertSameTokens("a=b==c&&d&e!f+g-h*i/j<k.l;m,n(o)p{q}r[s]t");
+	}
+
+	@Test
+	public void testEmptyBrackets() throws Exception {
+		assertSameTokens("int[] a; int[ ] b; int[ /* c */\r\n ] c; int[ // d\n ] d; int[ /* e ] e;");
+	}
+
+	@Test
+	public void testComments() throws Exception {
+		assertSameTokens("a /* b\n c */ d // e\r\n f /**/ g /*/ h */ i / * j // k");
+		assertSameTokens("x /* unterminated\n y");
+		assertSameTokens("x // at the end");
+	}
+
+	@Test
+	public void testLineTerminators() throws Exception {
+		assertSameTokens("a\rb\nc\r\nd\n\re\u000Bf\u000Cg\u0085h\u2028i\u2029j\t k");
+	}
+
+	@Test
+	public void testInvalidCharacters() throws Exception {
+		assertSameTokens("a # b @ c \u00E4 d \ud83d\ude00 e $ f ' g \" h");
+	}
+
+	@Test
+	public void testEmptyInput() throws Exception {
+		assertSameTokens("");
+		assertSameTokens("  \n ");
+	}
+}
@@ -0,0 +1,162 @@
+package notquitejava.syntax;
+
+import frontend.FastLexer;
+import frontend.FastParser;
+import frontend.NQJFrontend;
+import frontend.ProgramGenerator;
+import frontend.SourceText;
+import frontend.SyntaxError;
+import notquitejava.ast.NQJElement;
+import notquitejava.ast.NQJProgram;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Compares the trees of the hand-written {@link FastParser} with the trees of the
+ * generated {@link NotQuiteJavaParser}, including the source spans of all elements.
+ */
+public class FastParserTest {
+
+	private static NQJProgram parseFast(String input) throws Exception {
+		SourceText text = new SourceText("test", input);
+		return new FastParser(new FastLexer(text.getChars(), text.getLength())).parse();
+	}
+
+	private static void describe(NQJElement e, StringBuilder sb) {
+		sb.append(e.getClass().getSimpleName());
+		long span = e.getSourceSpan();
+		if (span != SourceText.NO_SPAN) {
+			sb.append('@').append(SourceText.start(span)).append('-').append(SourceText.end(span));
+		}
+		sb.append('(');
+		for (int i = 0; i < e.size(); i++) {
+			NQJElement child = e.get(i);
+			if (child != null) {
+				describe(child, sb);
+			}
+			sb.append(',');
+		}
+		sb.append(')');
+	}
+
+	static String describe(NQJElement e) {
+		StringBuilder sb = new StringBuilder();
+		describe(e, sb);
+		return sb.toString();
+	}
+
+	private static List<String> errors(NQJFrontend frontend) {
+		return frontend.getSyntaxErrors().stream()
+				.map(SyntaxError::toString)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Checks that both parsers produce the same tree, or that the hand-written parser
+	 * gives up when the generated parser reports errors.
+	 */
+	private static void assertSameTree(String input) throws Exception {
+		NQJFrontend generated = new NQJFrontend();
+		NQJProgram expected = generated.parseString(input);
+		NQJProgram actual = parseFast(input);
+		if (!generated.getSyntaxErrors().isEmpty()) {
+			assertNull(input, actual);
+			// the fast frontend falls back to the generated parser for the errors
+			NQJFrontend fast = new NQJFrontend();
+			fast.setUseFastParser(true);
+			fast.setUseFastLexer(true);
+			fast.parseString(input);
+			assertEquals(input, errors(generated), errors(fast));
+			return;
+		}
+		assertEquals(input, expected.toString(), actual.toString());
+		assertEquals(input, describe(expected), describe(actual));
+	}
+
+	@Test
+	public void testTestdata() throws Exception {
+		for (String dir : new String[]{"testdata/translation/classes", "testdata/typechecker/ok",
+				"testdata/typechecker/error"}) {
+			for (File f : Objects.requireNonNull(new File(dir).listFiles(File::isFile))) {
+				assertSameTree(Files.readString(f.toPath()));
+			}
+		}
+	}
+
+	@Test
+	public void testGeneratedProgram() throws Exception {
+		assertSameTree(new ProgramGenerator().generateSource());
+	}
+
+	@Test
+	public void testEmptyProgram() throws Exception {
+		assertSameTree("");
+		assertSameTree(" // nothing\n");
+		assertSameTree("class A {}\n\n");
+	}
+
+	@Test
+	public void testOperators() throws Exception {
+		assertSameTree("int main() { x = 1 + 2 * 3 - 4 / 5 < 6 == 7 && 8 < 9; return 0; }");
+		assertSameTree("int main() { x = a - b - c; y = a / b * c / d; return 0; }");
+		assertSameTree("int main() { x = a < b < c; y = a == b == c && d && e; return 0; }");
+		assertSameTree("int main() { x = -a * !b + - - c; y = a + - b * c; return !x; }");
+		assertSameTree("int main() { x = !a.b && -c[1]; y = null == this; return 0; }");
+	}
+
+	@Test
+	public void testParentheses() throws Exception {
+		assertSameTree("int main() { x = (a); y = ((a + b)) * c; z = (new int[3])[0]; return (x); }");
+		assertSameTree("int main() { x = -(a); y = !(b); z = (a)[1]; w = (a).length; return 0; }");
+	}
+
+	@Test
+	public void testCalls() throws Exception {
+		assertSameTree("int main() { f(); g(1); x = f(a, (b)) + h(); a.b().c = 1; return 0; }");
+		assertSameTree("int main() { return a.b.c.d(e).f[1][2].length; }");
+		assertSameTree("int main() { x = new A().f(1, 2); y = new int[3].length; return 0; }");
+	}
+
+	@Test
+	public void testTypes() throws Exception {
+		assertSameTree("int main() { A[][] z; a.b[] x; a[1] y; this.x y; new A().x y; return 0; }");
+		assertSameTree("int main() { x [ /* c */ ] y; x = new boolean[3][][]; return 0; }");
+		assertSameTree("A[] f(A[][] x, boolean b) { return null; } A.b g() { return 0; }");
+		assertSameTree("class A extends B { int x; A y; int[] z; int f(A a) { return 0; } }");
+	}
+
+	@Test
+	public void testStatements() throws Exception {
+		assertSameTree("int main() { if (a) { } else x = 1; while (b < c) { { } } return 0; }");
+		assertSameTree("int main() { 5; new A(); a.length; (a); a[b][c] = d; return 0; }");
+	}
+
+	@Test
+	public void testSyntaxErrors() throws Exception {
+		assertSameTree("int main() { (a) = 1; return 0; }");
+		assertSameTree("int main() { f().x = 1; return 0; }");
+		assertSameTree("int main() { x = new int[3][0]; return 0; }");
+		assertSameTree("int main() { if (a) int x; else y = 1; return 0; }");
+		assertSameTree("int main() { if (a) x = 1; return 0; }");
+		assertSameTree("int main() { a = b = c; return; }");
+		assertSameTree("int main() { int x = 1; return f(1,); }");
+		assertSameTree("int x; class A { f() { } }");
+		assertSameTree("int main() { x = a # b; return 0; }");
+		assertSameTree("class A {\nint main() { return 0; } }\nclass");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNumberOutOfRange() throws Exception {
+		String input = "int main() { return 2147483648; }";
+		assertNull(parseFast(input));
+		new NQJFrontend().parseString(input);
+	}
+}
@@ -0,0 +1,116 @@
+package notquitejava.syntax;
+
+import frontend.NQJFrontend;
+import frontend.SourceText;
+import frontend.SyntaxError;
+import frontend.TextEdit;
+import notquitejava.ast.NQJFunctionDecl;
+import notquitejava.ast.NQJProgram;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that reparsing an edited program gives the same tree, spans and errors
+ * as parsing the edited text from scratch.
+ */
+public class IncrementalParseTest {
+
+	private static final String[] REPLACEMENTS = {"", " ", "x", "1", "}", "{", ";", "/*", "*/",
+			"//", "\n", "class C { }", "int f() { return 0; }", "} int g() { return 1; }"};
+
+	private static List<String> errors(NQJFrontend frontend) {
+		return frontend.getSyntaxErrors().stream()
+				.map(SyntaxError::toString)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Incremental reparsing requires the hand-written parser and lexer.
+	 */
+	private static NQJFrontend incrementalFrontend() {
+		NQJFrontend frontend = new NQJFrontend();
+		frontend.setUseFastParser(true);
+		frontend.setUseFastLexer(true);
+		return frontend;
+	}
+
+	private static NQJProgram assertSameAsParse(String input, TextEdit edit) throws Exception {
+		NQJFrontend incremental = incrementalFrontend();
+		NQJProgram previous = incremental.parse(new SourceText("test", input));
+		if (previous == null || !incremental.getSyntaxErrors().isEmpty()) {
+			return null;
+		}
+		NQJProgram actual = incremental.reparse(previous, edit);
+
+		SourceText edited = edit.apply(new SourceText("test", input));
+		NQJFrontend full = new NQJFrontend();
+		NQJProgram expected = full.parse(edited);
+		String message = input + "\n" + edit;
+		assertEquals(message, errors(full), errors(incremental));
+		if (expected != null) {
+			assertEquals(message, expected.toString(), actual.toString());
+			assertEquals(message, FastParserTest.describe(expected),
+					FastParserTest.describe(actual));
+			assertEquals(message, new String(edited.getChars(), 0, edited.getLength()),
+					new String(actual.getSourceText().getChars(), 0,
+							actual.getSourceText().getLength()));
+		}
+		return actual;
+	}
+
+	@Test
+	public void testReuseUnchangedDeclarations() throws Exception {
+		String input = "int f() { return 1; }\nclass A { int x; }\nint g() { return 2; }\n";
+		NQJFrontend frontend = incrementalFrontend();
+		NQJProgram program = frontend.parseString(input);
+		NQJFunctionDecl f = program.getFunctionDecls().get(0);
+		NQJFunctionDecl g = program.getFunctionDecls().get(1);
+		int offset = input.indexOf("x;");
+		NQJProgram edited = frontend.reparse(program, new TextEdit(offset, 1, "xyz"));
+		assertSame(program, edited);
+		assertSame(f, edited.getFunctionDecls().get(0));
+		assertSame(g, edited.getFunctionDecls().get(1));
+		assertEquals("xyz", edited.getClassDecls().get(0).getFields().get(0).getName());
+		assertEquals(input.indexOf("int g") + 2,
+				SourceText.start(g.getSourceSpan()));
+	}
+
+	@Test
+	public void testEdits() throws Exception {
+		String input = "int main() { return 0; }\n/* c */ class A { int x; }\n"
+				+ "int f(int a) { return a; } // end\nclass B extends A { }\n";
+		for (int offset = 0; offset <= input.length(); offset++) {
+			for (String replacement : REPLACEMENTS) {
+				assertSameAsParse(input, new TextEdit(offset, 0, replacement));
+				if (offset < input.length()) {
+					assertSameAsParse(input, new TextEdit(offset, 1, replacement));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception {
+		Random random = new Random(42);
+		for (String dir : new String[]{"testdata/translation/classes", "testdata/typechecker/ok"}) {
+			for (File f : Objects.requireNonNull(new File(dir).listFiles(File::isFile))) {
+				String input = Files.readString(f.toPath());
+				for (int i = 0; i < 20; i++) {
+					int offset = random.nextInt(input.length() + 1);
+					int length = random.nextInt(Math.min(20, input.length() - offset) + 1);
+					String replacement = REPLACEMENTS[random.nextInt(REPLACEMENTS.length)];
+					assertSameAsParse(input, new TextEdit(offset, length, replacement));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package notquitejava.syntax;
+
+import frontend.CompilerThread;
+import frontend.NQJFrontend;
+import frontend.ProgramGenerator;
+import frontend.SourceText;
+import frontend.SyntaxError;
+import frontend.TopLevelSplitter;
+import notquitejava.ast.NQJProgram;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that parsing chunks of top level declarations in parallel produces
+ * the same trees and errors as parsing the whole input at once.
+ */
+public class ParallelParseTest {
+
+	private static String largeProgram() {
+		ProgramGenerator generator = new ProgramGenerator();
+		generator.setClasses(400);
+		String source = generator.generateSource();
+		assertTrue(source.length() > 1 << 16);
+		return source;
+	}
+
+	private static NQJFrontend frontend(int threads) {
+		NQJFrontend frontend = new NQJFrontend();
+		frontend.setUseFastParser(true);
+		frontend.setUseFastLexer(true);
+		frontend.setParseThreads(threads);
+		return frontend;
+	}
+
+	private static List<String> errors(NQJFrontend frontend) {
+		return frontend.getSyntaxErrors().stream()
+				.map(SyntaxError::toString)
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testSameTree() throws Exception {
+		String source = largeProgram();
+		NQJProgram expected = frontend(1).parse(new SourceText("test", source));
+		NQJProgram actual = frontend(4).parse(new SourceText("test", source));
+		assertNotNull(actual);
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(FastParserTest.describe(expected), FastParserTest.describe(actual));
+	}
+
+	@Test
+	public void testSyntaxError() throws Exception {
+		String source = largeProgram() + "\nint main() { return 0 }\n";
+		NQJFrontend sequential = frontend(1);
+		sequential.parseString(source);
+		NQJFrontend parallel = frontend(4);
+		parallel.parseString(source);
+		assertFalse(sequential.getSyntaxErrors().isEmpty());
+		assertEquals(errors(sequential), errors(parallel));
+	}
+
+	@Test
+	public void testDeeplyNestedChunk() throws Exception {
+		StringBuilder sb = new StringBuilder(ProgramGenerator.nestedSource(50_000));
+		for (int i = 0; i < 8; i++) {
+			sb.append("int f").append(i).append("() {\n  return ").append(i).append(";\n}\n");
+		}
+		String source = sb.toString();
+		// the nested function is parsed by a pool thread, which needs the large stack as well
+		CompilerThread.call(() -> {
+			NQJProgram expected = frontend(1).parse(new SourceText("test", source));
+			NQJFrontend parallel = frontend(4);
+			NQJProgram actual = parallel.parse(new SourceText("test", source));
+			assertNotNull(actual);
+			assertEquals(Collections.emptyList(), parallel.getSyntaxErrors());
+			assertEquals(expected.getFunctionDecls().size(), actual.getFunctionDecls().size());
+			return null;
+		});
+	}
+
+	@Test
+	public void testSplitBounds() {
+		String source = "class A { int f() { return 0; } }\n"
+				+ "// } not a brace\n"
+				+ "int g() { /* { */ return 1; }\n"
+				+ "class B { }\n";
+		char[] chars = source.toCharArray();
+		int first = source.indexOf('\n');
+		int second = source.indexOf("\nclass B");
+		assertArrayEquals(new int[]{0, first, second, source.length()},
+				TopLevelSplitter.split(chars, chars.length, 3));
+		assertArrayEquals(new int[]{0, source.length()},
+				TopLevelSplitter.split(chars, chars.length, 1));
+	}
+
+	@Test
+	public void testSplitUnbalanced() {
+		char[] chars = "class A { } } class B { }".toCharArray();
+		assertArrayEquals(new int[]{0, 11, chars.length},
+				TopLevelSplitter.split(chars, chars.length, 4));
+		chars = "class A { } /* class B { }".toCharArray();
+		assertArrayEquals(new int[]{0, 11, chars.length},
+				TopLevelSplitter.split(chars, chars.length, 4));
+	}
+}
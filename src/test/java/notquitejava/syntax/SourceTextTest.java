@@ -0,0 +1,123 @@
+package notquitejava.syntax;
+
+import analysis.Analysis;
+import analysis.TypeError;
+import frontend.AstPrinter;
+import frontend.NQJFrontend;
+import frontend.SourcePosition;
+import frontend.SourceText;
+import frontend.SyntaxError;
+import notquitejava.ast.NQJProgram;
+import notquitejava.ast.NQJStatement;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the lines and columns computed from source offsets.
+ */
+public class SourceTextTest {
+
+	@Test
+	public void testLinesAndColumns() {
+		SourceText text = new SourceText("test", "ab\ncd\r\nef\rg h");
+		assertEquals(1, text.line(0));
+		assertEquals(2, text.column(1));
+		assertEquals(2, text.line(3));
+		assertEquals(1, text.column(3));
+		assertEquals(3, text.line(7));
+		assertEquals(2, text.column(8));
+		assertEquals(4, text.line(10));
+		assertEquals(5, text.line(12));
+		assertEquals(2, text.column(13));
+	}
+
+	@Test
+	public void testOffsets() {
+		SourceText text = new SourceText("test", "ab\ncd\r\nef\rg\u2028h");
+		assertEquals(0, text.offset(1, 1));
+		assertEquals(4, text.offset(2, 2));
+		// columns after the end of a line stop before the line break
+		assertEquals(5, text.offset(2, 9));
+		assertEquals(7, text.offset(3, 1));
+		assertEquals(12, text.offset(5, 1));
+		assertEquals(13, text.offset(5, 5));
+		assertEquals(13, text.offset(9, 1));
+	}
+
+	private String readFile(byte[] content) throws Exception {
+		Path file = Files.createTempFile("source", ".java");
+		try {
+			Files.write(file, content);
+			SourceText text = SourceText.readFile(file);
+			return new String(text.getChars(), 0, text.getLength());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testReadFile() throws Exception {
+		String source = "int main() {\r\n  // \u00e4\u20ac\ud83d\ude00\r\n  return 0;\r\n}\r\n";
+		assertEquals(source, readFile(source.getBytes(StandardCharsets.UTF_8)));
+		// the byte order mark is skipped
+		byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'x'};
+		assertEquals("x", readFile(bom));
+		// malformed input is replaced
+		assertEquals("a\ufffdb", readFile(new byte[] {'a', (byte) 0xFF, 'b'}));
+		assertEquals("", readFile(new byte[0]));
+	}
+
+	@Test
+	public void testReadMappedFile() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 2 << 20) {
+			sb.append("x = x + 1; // \u00fcber\n");
+		}
+		String source = sb.toString();
+		assertEquals(source, readFile(source.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testElementPosition() throws Exception {
+		NQJProgram program = new NQJFrontend().parseString("int main() {\n  return 0;\n}\n");
+		SourcePosition pos = program.getFunctionDecls().get(0).getMethodBody().get(0)
+				.getSourcePosition();
+		assertEquals(2, pos.getLine());
+		assertEquals(3, pos.getColumn());
+		assertEquals(2, pos.getEndLine());
+		assertEquals(12, pos.getEndColumn());
+	}
+
+	@Test
+	public void testFirstLine() throws Exception {
+		NQJProgram program = new NQJFrontend().parseString(
+				"int main() {\n  while (true) {   \n    return 0;\n  }\n  return 1;\n}\n");
+		NQJStatement loop = program.getFunctionDecls().get(0).getMethodBody().get(0);
+		assertEquals("while (true) {", program.getSourceText().firstLine(loop.getSourceSpan()));
+		assertEquals("while (true) {", AstPrinter.printFirstLine(loop));
+	}
+
+	@Test
+	public void testSyntaxErrorPosition() throws Exception {
+		NQJFrontend frontend = new NQJFrontend();
+		frontend.parseString("int main() {\n  return 0\n}\n");
+		SyntaxError error = frontend.getSyntaxErrors().get(0);
+		assertEquals(3, error.getLine());
+		assertEquals(1, error.getColumn());
+	}
+
+	@Test
+	public void testTypeErrorPosition() throws Exception {
+		NQJProgram program = new NQJFrontend().parseString(
+				"int main() {\n  int x;\n  x = true;\n  return 0;\n}\n");
+		Analysis analysis = new Analysis(program);
+		analysis.check();
+		TypeError error = analysis.getTypeErrors().get(0);
+		assertEquals(3, error.getLine());
+	}
+}
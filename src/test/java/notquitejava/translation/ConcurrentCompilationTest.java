@@ -0,0 +1,84 @@
+package notquitejava.translation;
+
+import main.NotQuiteJavaCompiler;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Compiles the programs from the folder testdata on many threads at once
+ * and checks that every result is identical to the result of a serial compilation.
+ */
+public class ConcurrentCompilationTest {
+
+	private static final int COMPILATIONS = 400;
+	private static final int THREADS = 8;
+
+	@Test
+	public void testParallelCompilesMatchSerialRuns() throws Exception {
+		List<File> inputs = testFiles();
+		assertFalse("No test programs found in testdata", inputs.isEmpty());
+
+		List<String> expected = new ArrayList<>();
+		for (File input : inputs) {
+			expected.add(compile(input));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < COMPILATIONS; i++) {
+				File input = inputs.get(i % inputs.size());
+				results.add(pool.submit(() -> compile(input)));
+			}
+			for (int i = 0; i < COMPILATIONS; i++) {
+				File input = inputs.get(i % inputs.size());
+				assertEquals("Parallel compilation of " + input + " differs from serial run",
+						expected.get(i % inputs.size()), results.get(i).get());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Compiles a file and renders everything observable about the result as text.
+	 */
+	private static String compile(File input) {
+		StringBuilder result = new StringBuilder();
+		try {
+			NotQuiteJavaCompiler compiler = new NotQuiteJavaCompiler();
+			compiler.compileString(input.getName(), Files.readString(input.toPath()));
+			compiler.getSyntaxErrors().forEach(e -> result.append(e).append("\n"));
+			compiler.getTypeErrors().forEach(e -> result.append(e).append("\n"));
+			if (compiler.getLlvmProg() != null) {
+				result.append(compiler.getLlvmProg());
+			}
+		} catch (Exception e) {
+			result.append("Compilation failed with ").append(e.getClass().getName());
+		}
+		return result.toString();
+	}
+
+	private static List<File> testFiles() throws IOException {
+		try (Stream<Path> files = Files.walk(new File("testdata").toPath())) {
+			return files.filter(p -> p.toString().endsWith(".java"))
+					.sorted()
+					.map(Path::toFile)
+					.collect(Collectors.toList());
+		}
+	}
+}
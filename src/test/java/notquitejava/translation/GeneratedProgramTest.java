@@ -0,0 +1,61 @@
+package notquitejava.translation;
+
+import frontend.ProgramGenerator;
+import main.NotQuiteJavaCompiler;
+import minillvm.analysis.Checks;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the programs of the scaling workload generator are valid.
+ */
+public class GeneratedProgramTest {
+
+	private void assertCompiles(ProgramGenerator generator) throws Exception {
+		assertCompiles(generator.generateSource());
+	}
+
+	private void assertCompiles(String source) throws Exception {
+		NotQuiteJavaCompiler compiler = new NotQuiteJavaCompiler();
+		compiler.compileString("Generated.java", source);
+		assertEquals(source, Collections.emptyList(), compiler.getSyntaxErrors());
+		assertEquals(source, Collections.emptyList(), compiler.getTypeErrors());
+		new Checks().checkProgram(compiler.getLlvmProg());
+	}
+
+	@Test
+	public void testDefaultProgram() throws Exception {
+		assertCompiles(new ProgramGenerator());
+	}
+
+	@Test
+	public void testInheritanceChains() throws Exception {
+		ProgramGenerator generator = new ProgramGenerator();
+		generator.setClasses(30);
+		generator.setInheritanceDepth(7);
+		assertCompiles(generator);
+	}
+
+	@Test
+	public void testLargeFunction() throws Exception {
+		ProgramGenerator generator = new ProgramGenerator();
+		generator.setFunctionStatements(500);
+		generator.setNestingDepth(20);
+		generator.setExpressionSize(50);
+		generator.setArrayAccesses(100);
+		assertCompiles(generator);
+	}
+
+	@Test
+	public void testDeeplyNestedStatements() throws Exception {
+		assertCompiles(ProgramGenerator.nestedSource(100_000));
+	}
+
+	@Test
+	public void testLongOperatorChain() throws Exception {
+		assertCompiles(ProgramGenerator.operatorChainSource(100_000));
+	}
+}
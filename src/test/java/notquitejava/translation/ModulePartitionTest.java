@@ -0,0 +1,76 @@
+package notquitejava.translation;
+
+import main.NotQuiteJavaCompiler;
+import minillvm.ast.Prog;
+import minillvm.printer.DuplicateNames;
+import minillvm.printer.ModulePartition;
+import minillvm.printer.PrettyPrinter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Splits the translated programs from testdata/translation into several modules
+ * and checks that they behave like the single module.
+ */
+@RunWith(Parameterized.class)
+public class ModulePartitionTest {
+
+	private final File inputFile;
+
+	public ModulePartitionTest(File inputFile) {
+		this.inputFile = inputFile;
+	}
+
+	@Test
+	public void testPartitionsBehaveLikeModule() throws Exception {
+		NotQuiteJavaCompiler compiler = new NotQuiteJavaCompiler();
+		compiler.compileString(inputFile.getName(), Files.readString(inputFile.toPath()));
+		assertEquals(Collections.emptyList(), compiler.getSyntaxErrors());
+		assertEquals(Collections.emptyList(), compiler.getTypeErrors());
+		Prog llvmProg = compiler.getLlvmProg();
+		DuplicateNames.eliminateDuplicateNames(llvmProg);
+
+		String expected = run(Collections.singletonList(llvmProg.toString()));
+		for (int count : new int[]{1, 2, 3, 8}) {
+			List<String> modules = new ArrayList<>();
+			for (ModulePartition partition : ModulePartition.split(llvmProg, count)) {
+				StringBuilder sb = new StringBuilder();
+				PrettyPrinter printer = new PrettyPrinter(sb);
+				printer.setEliminateDuplicateNames(false);
+				printer.setPartition(partition);
+				llvmProg.match(printer);
+				modules.add(sb.toString());
+			}
+			assertEquals("partitions: " + count, expected, run(modules));
+		}
+	}
+
+	private static String run(List<String> modules) throws Exception {
+		try {
+			return TranslationTestHelper.runLlvmModulesAndGetOutput(modules, "*random");
+		} catch (TranslationTestHelper.ProgramExecutionException e) {
+			return "exit code " + e.getExitCode() + "\n" + e.getOutput();
+		}
+	}
+
+	@Parameterized.Parameters(name = "{0}")
+	public static Collection<Object[]> data() {
+		ArrayList<Object[]> ctorParams = new ArrayList<>();
+		for (File dir : Objects.requireNonNull(new File("testdata/translation")
+				.listFiles(File::isDirectory))) {
+			File[] files = Objects.requireNonNull(dir.listFiles(File::isFile));
+			Arrays.sort(files, Comparator.comparing(File::length));
+			for (File f : files) {
+				ctorParams.add(new Object[]{f});
+			}
+		}
+		return ctorParams;
+	}
+}
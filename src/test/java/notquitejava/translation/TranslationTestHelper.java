@@ -22,7 +22,9 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -249,6 +251,27 @@ public class TranslationTestHelper {
 		return normalize(new String(output));
 	}
 
+	/**
+	 * Runs a program split into several modules, the first module is the main module of lli.
+	 */
+	public static String runLlvmModulesAndGetOutput(List<String> modules, String programInput) throws Exception {
+		List<String> command = new ArrayList<>();
+		command.add(LLVM_LLI_EXE);
+		File mainModule = null;
+		for (String module : modules) {
+			File tempFile = File.createTempFile("llvm", "ll");
+			Files.write(tempFile.toPath(), module.getBytes());
+			if (mainModule == null) {
+				mainModule = tempFile;
+			} else {
+				command.add("-extra-module=" + tempFile.getAbsolutePath());
+			}
+		}
+		command.add(mainModule.getAbsolutePath());
+		byte[] output = runProgram(new ProcessBuilder(command), programInput.getBytes());
+		return normalize(new String(output));
+	}
+
 	public static void compileLlvm(Prog llp, String name) throws Exception {
 		byte[] code = llp.toString().getBytes();
 		File llFile = new File(debugOutputFolder, name + ".ll");
@@ -319,6 +342,10 @@ public class TranslationTestHelper {
 		public String getOutput() {
 			return new String(output, StandardCharsets.UTF_8);
 		}
+
+		public int getExitCode() {
+			return exitCode;
+		}
 	}
 
 	private static byte[] bytesFromInput(InputStream is) throws IOException {
@@ -0,0 +1,341 @@
+package frontend;
+
+import java.util.Random;
+import notquitejava.ast.*;
+
+/**
+ * Generates valid NQJ programs of a given size, used as scaling workloads.
+ *
+ * <p>A generated program consists of classes C0, C1, ... which are arranged in
+ * inheritance chains, a function work with many statements and array accesses,
+ * and a main function calling all methods.
+ * Every class has an int field, an int array field and one method.
+ * Statement bodies mix assignments, array writes, nested if statements and loops,
+ * and all loops terminate, so the generated programs can also be executed.
+ */
+public class ProgramGenerator {
+
+    private static final int ARRAY_SIZE = 16;
+    private static final int LOOP_ITERATIONS = 4;
+
+    private int classes = 10;
+    private int inheritanceDepth = 1;
+    private int statementsPerMethod = 10;
+    private int functionStatements = 10;
+    private int nestingDepth = 2;
+    private int expressionSize = 4;
+    private int arrayAccesses = 0;
+    private Random random = new Random(42);
+
+    /**
+     * Generates the program as an AST.
+     */
+    public NQJProgram generate() {
+        NQJClassDeclList classDecls = NQJ.ClassDeclList();
+        for (int i = 0; i < classes; i++) {
+            classDecls.add(classDecl(i));
+        }
+        NQJFunctionDeclList functions = NQJ.FunctionDeclList();
+        functions.add(mainFunction());
+        functions.add(workFunction());
+        return NQJ.Program(classDecls, functions);
+    }
+
+    /**
+     * Generates the program as source code.
+     */
+    public String generateSource() {
+        return AstPrinter.print(generate());
+    }
+
+    /**
+     * Generates a main function whose body is nested in the given number of blocks,
+     * if statements and while loops. Every level declares a variable v1, v2, ...
+     * and uses the variable of the enclosing level. Every loop runs once.
+     * The source is built directly, printing an AST this deep would need a large stack.
+     */
+    public static String nestedSource(int depth) {
+        StringBuilder sb = new StringBuilder("int main() {\n  int v0;\n  v0 = 0;\n");
+        for (int i = 1; i <= depth; i++) {
+            switch (i % 3) {
+                case 0:
+                    sb.append("{\n");
+                    break;
+                case 1:
+                    sb.append("if (v").append(i - 1).append(" < ").append(i).append(") {\n");
+                    break;
+                default:
+                    sb.append("while (v").append(i - 1).append(" < ").append(i).append(") {\n");
+            }
+            sb.append("int v").append(i).append(";\nv").append(i).append(" = ").append(i)
+                    .append(";\n");
+        }
+        for (int i = depth; i >= 1; i--) {
+            switch (i % 3) {
+                case 0:
+                    sb.append("}\n");
+                    break;
+                case 1:
+                    sb.append("} else {\nv").append(i - 1).append(" = 0;\n}\n");
+                    break;
+                default:
+                    sb.append("v").append(i - 1).append(" = ").append(i).append(";\n}\n");
+            }
+        }
+        return sb.append("  printInt(v0);\n  return 0;\n}\n").toString();
+    }
+
+    /**
+     * Generates a main function which declares the given number of local variables
+     * and reads all of them in a block nested the given number of levels deep.
+     * Every level of nesting declares a variable which shadows a local variable.
+     */
+    public static String localsSource(int locals, int depth) {
+        StringBuilder sb = new StringBuilder("int main() {\n  int s;\n  s = 0;\n");
+        for (int i = 0; i < locals; i++) {
+            sb.append("  int l").append(i).append(";\n  l").append(i).append(" = ")
+                    .append(i).append(";\n");
+        }
+        for (int i = 0; i < depth; i++) {
+            int shadowed = i % Math.max(locals, 1);
+            sb.append("{\nint l").append(shadowed).append(";\nl").append(shadowed).append(" = ")
+                    .append(i).append(";\n");
+        }
+        for (int i = 0; i < locals; i++) {
+            sb.append("s = s + l").append(i).append(";\n");
+        }
+        for (int i = 0; i < depth; i++) {
+            sb.append("}\n");
+        }
+        return sb.append("  printInt(s);\n  return 0;\n}\n").toString();
+    }
+
+    /**
+     * Generates a main function computing a chain of the given number of binary operators,
+     * which is parsed into an expression tree of the same depth.
+     */
+    public static String operatorChainSource(int length) {
+        StringBuilder sb = new StringBuilder("int main() {\n  int x;\n  x = 1;\n  x = x");
+        for (int i = 0; i < length; i++) {
+            sb.append(i % 2 == 0 ? " + " : " - ").append(i % 2 == 0 ? "x" : "1");
+        }
+        return sb.append(";\n  printInt(x);\n  return 0;\n}\n").toString();
+    }
+
+    private boolean hasSuperClass(int i) {
+        return i % inheritanceDepth != 0;
+    }
+
+    private NQJClassDecl classDecl(int i) {
+        NQJExtended extended = hasSuperClass(i)
+                ? NQJ.ExtendsClass("C" + (i - 1))
+                : NQJ.ExtendsNothing();
+        NQJVarDeclList fields = NQJ.VarDeclList(
+                NQJ.VarDecl(NQJ.TypeInt(), "f" + i),
+                NQJ.VarDecl(NQJ.TypeArray(NQJ.TypeInt()), "a" + i));
+
+        NQJBlock body = NQJ.Block();
+        body.add(NQJ.VarDecl(NQJ.TypeInt(), "y"));
+        body.add(NQJ.VarDecl(NQJ.TypeInt(), "k"));
+        body.add(NQJ.VarDecl(NQJ.TypeArray(NQJ.TypeInt()), "arr"));
+        body.add(assign("a" + i, NQJ.NewArray(NQJ.TypeInt(), NQJ.Number(ARRAY_SIZE))));
+        body.add(assign("arr", read("a" + i)));
+        body.add(assign("y", NQJ.ExprBinary(read("x"), NQJ.Plus(), read("f" + i))));
+        for (int s = 0; s < statementsPerMethod; s++) {
+            body.add(statement(s));
+        }
+        if (hasSuperClass(i)) {
+            body.add(assign("y", NQJ.ExprBinary(read("y"), NQJ.Plus(),
+                    NQJ.MethodCall(NQJ.ExprThis(), "m" + (i - 1),
+                            NQJ.ExprList(NQJ.Number(i % 7))))));
+        }
+        body.add(NQJ.StmtReturn(read("y")));
+        NQJFunctionDecl method = NQJ.FunctionDecl(NQJ.TypeInt(), "m" + i,
+                NQJ.VarDeclList(NQJ.VarDecl(NQJ.TypeInt(), "x")), body);
+        return NQJ.ClassDecl("C" + i, extended, fields, NQJ.FunctionDeclList(method));
+    }
+
+    private NQJFunctionDecl workFunction() {
+        NQJBlock body = NQJ.Block();
+        body.add(NQJ.VarDecl(NQJ.TypeInt(), "y"));
+        body.add(NQJ.VarDecl(NQJ.TypeInt(), "k"));
+        body.add(NQJ.VarDecl(NQJ.TypeArray(NQJ.TypeInt()), "arr"));
+        body.add(assign("arr", NQJ.NewArray(NQJ.TypeInt(), NQJ.Number(ARRAY_SIZE))));
+        body.add(assign("y", read("x")));
+        for (int s = 0; s < functionStatements; s++) {
+            body.add(statement(s));
+        }
+        for (int s = 0; s < arrayAccesses; s++) {
+            // arr[i] = arr[j] + arr[k]
+            body.add(NQJ.StmtAssign(arrayElement(), NQJ.ExprBinary(
+                    NQJ.Read(arrayElement()), NQJ.Plus(), NQJ.Read(arrayElement()))));
+        }
+        body.add(NQJ.StmtReturn(read("y")));
+        return NQJ.FunctionDecl(NQJ.TypeInt(), "work",
+                NQJ.VarDeclList(NQJ.VarDecl(NQJ.TypeInt(), "x")), body);
+    }
+
+    private NQJFunctionDecl mainFunction() {
+        NQJBlock body = NQJ.Block();
+        body.add(NQJ.VarDecl(NQJ.TypeInt(), "sum"));
+        body.add(assign("sum", NQJ.FunctionCall("work", NQJ.ExprList(NQJ.Number(1)))));
+        for (int i = 0; i < classes; i++) {
+            body.add(assign("sum", NQJ.ExprBinary(read("sum"), NQJ.Plus(),
+                    NQJ.MethodCall(NQJ.NewObject("C" + i), "m" + i,
+                            NQJ.ExprList(NQJ.Number(i % 100))))));
+        }
+        body.add(NQJ.StmtExpr(NQJ.FunctionCall("printInt", NQJ.ExprList(read("sum")))));
+        body.add(NQJ.StmtReturn(NQJ.Number(0)));
+        return NQJ.FunctionDecl(NQJ.TypeInt(), "main", NQJ.VarDeclList(), body);
+    }
+
+    /**
+     * A statement in a body declaring x, y, k and arr.
+     */
+    private NQJStatement statement(int index) {
+        switch (index % 4) {
+            case 0:
+                return assign("y", expression(expressionSize));
+            case 1:
+                return NQJ.StmtAssign(arrayElement(), expression(expressionSize));
+            case 2:
+                return nestedIf(nestingDepth);
+            default:
+                return loop();
+        }
+    }
+
+    private NQJStatement nestedIf(int depth) {
+        NQJStatement inner = depth <= 1
+                ? assign("y", expression(expressionSize))
+                : nestedIf(depth - 1);
+        NQJExpr condition = NQJ.ExprBinary(expression(2), NQJ.Less(), expression(2));
+        if (random.nextBoolean()) {
+            condition = NQJ.ExprBinary(condition, NQJ.And(),
+                    NQJ.ExprUnary(NQJ.Negate(), NQJ.ExprBinary(read("y"), NQJ.Equals(),
+                            NQJ.Number(random.nextInt(10)))));
+        }
+        return NQJ.StmtIf(condition, NQJ.Block(inner),
+                NQJ.Block(assign("y", NQJ.ExprBinary(read("y"), NQJ.Minus(), NQJ.Number(1)))));
+    }
+
+    /**
+     * A loop with a fixed number of iterations, writing the array.
+     */
+    private NQJStatement loop() {
+        NQJBlock body = NQJ.Block(
+                NQJ.StmtAssign(NQJ.ArrayLookup(read("arr"), read("k")),
+                        expression(expressionSize)),
+                assign("k", NQJ.ExprBinary(read("k"), NQJ.Plus(), NQJ.Number(1))));
+        return NQJ.Block(
+                assign("k", NQJ.Number(0)),
+                NQJ.StmtWhile(NQJ.ExprBinary(read("k"), NQJ.Less(),
+                        NQJ.Number(LOOP_ITERATIONS)), body));
+    }
+
+    /**
+     * A balanced int expression with the given number of leaves.
+     */
+    private NQJExpr expression(int leaves) {
+        if (leaves <= 1) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    return read("x");
+                case 1:
+                    return read("y");
+                case 2:
+                    return NQJ.Read(arrayElement());
+                default:
+                    return NQJ.Number(random.nextInt(100));
+            }
+        }
+        int left = leaves / 2;
+        NQJOperator op;
+        switch (random.nextInt(3)) {
+            case 0:
+                op = NQJ.Plus();
+                break;
+            case 1:
+                op = NQJ.Minus();
+                break;
+            default:
+                op = NQJ.Times();
+        }
+        return NQJ.ExprBinary(expression(left), op, expression(leaves - left));
+    }
+
+    private NQJExprL arrayElement() {
+        return NQJ.ArrayLookup(read("arr"), NQJ.Number(random.nextInt(ARRAY_SIZE)));
+    }
+
+    private static NQJExpr read(String var) {
+        return NQJ.Read(NQJ.VarUse(var));
+    }
+
+    private static NQJStatement assign(String var, NQJExpr value) {
+        return NQJ.StmtAssign(NQJ.VarUse(var), value);
+    }
+
+    public int getClasses() {
+        return classes;
+    }
+
+    public void setClasses(int classes) {
+        this.classes = classes;
+    }
+
+    public int getInheritanceDepth() {
+        return inheritanceDepth;
+    }
+
+    /**
+     * Sets the length of the extends chains, 1 means no inheritance.
+     */
+    public void setInheritanceDepth(int inheritanceDepth) {
+        this.inheritanceDepth = Math.max(1, inheritanceDepth);
+    }
+
+    public int getStatementsPerMethod() {
+        return statementsPerMethod;
+    }
+
+    public void setStatementsPerMethod(int statementsPerMethod) {
+        this.statementsPerMethod = statementsPerMethod;
+    }
+
+    public int getFunctionStatements() {
+        return functionStatements;
+    }
+
+    public void setFunctionStatements(int functionStatements) {
+        this.functionStatements = functionStatements;
+    }
+
+    public int getNestingDepth() {
+        return nestingDepth;
+    }
+
+    public void setNestingDepth(int nestingDepth) {
+        this.nestingDepth = nestingDepth;
+    }
+
+    public int getExpressionSize() {
+        return expressionSize;
+    }
+
+    public void setExpressionSize(int expressionSize) {
+        this.expressionSize = expressionSize;
+    }
+
+    public int getArrayAccesses() {
+        return arrayAccesses;
+    }
+
+    public void setArrayAccesses(int arrayAccesses) {
+        this.arrayAccesses = arrayAccesses;
+    }
+
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+}